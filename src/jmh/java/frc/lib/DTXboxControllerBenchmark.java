@@ -0,0 +1,124 @@
+package frc.lib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+
+/**
+ * Input shaping and trigger evaluation on a controller fed from HAL sim.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DTXboxControllerBenchmark {
+    @Param({ "0.0", "0.1" })
+    public double deadBand;
+
+    @Param({ "0.05", "0.6", "-0.95" })
+    public double stick;
+
+    private DTXboxController controller;
+    private DTXboxController shapedController;
+    private Trigger          feederGate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HAL.initialize(500, 0);
+        controller = new DTXboxController(0);
+        controller.setDeadBand(deadBand);
+        feederGate = controller.rightTrigger.debounce(2).and(controller.leftTrigger);
+
+        XboxControllerSim sim = new XboxControllerSim(0);
+        sim.setLeftX(stick);
+        sim.setLeftY(stick);
+        sim.setRightX(-stick);
+        sim.setRightY(-stick);
+        sim.setLeftTriggerAxis(Math.abs(stick));
+        sim.setRightTriggerAxis(Math.abs(stick));
+        sim.setLeftBumper(true);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+        controller.update();
+
+        // Every stage on every axis, to compare against the plain reads
+        AxisCurve curve = new AxisCurve().deadband(deadBand).power(2).cubic(0.3).scale(0.8).clamp(0.7).slewRate(3);
+        ShapingProfile profile = new ShapingProfile("Benchmark");
+        for (DTXboxController.Axis axis : DTXboxController.Axis.values()) {
+            profile.with(axis, curve);
+        }
+        shapedController = new DTXboxController(0);
+        shapedController.setShapingProfile(profile);
+        shapedController.update();
+    }
+
+    @Benchmark
+    public void update() {
+        controller.update();
+    }
+
+    @Benchmark
+    public double deadBandAxis() {
+        return controller.getLeftStickY();
+    }
+
+    @Benchmark
+    public double squaredAxis() {
+        return controller.getLeftStickYSquared();
+    }
+
+    @Benchmark
+    public void allAxesSquared(Blackhole blackhole) {
+        blackhole.consume(controller.getLeftStickXSquared());
+        blackhole.consume(controller.getLeftStickYSquared());
+        blackhole.consume(controller.getRightStickXSquared());
+        blackhole.consume(controller.getRightStickYSquared());
+        blackhole.consume(controller.getLeftTriggerSquared());
+        blackhole.consume(controller.getRightTriggerSquared());
+    }
+
+    @Benchmark
+    public void shapedUpdate() {
+        shapedController.update();
+    }
+
+    @Benchmark
+    public double shapedAxis() {
+        return shapedController.getShaped(DTXboxController.Axis.LEFT_Y);
+    }
+
+    @Benchmark
+    public boolean axisTrigger() {
+        return controller.rightTrigger.getAsBoolean();
+    }
+
+    @Benchmark
+    public boolean buttonTrigger() {
+        return controller.leftBumper.getAsBoolean();
+    }
+
+    @Benchmark
+    public boolean composedTrigger() {
+        return feederGate.getAsBoolean();
+    }
+}
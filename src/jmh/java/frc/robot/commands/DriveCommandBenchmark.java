@@ -0,0 +1,103 @@
+package frc.robot.commands;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.lib.DTXboxController;
+import frc.robot.subsystems.DriveTrain;
+
+/**
+ * One full DriveCommand.execute per invocation, once against a DriveTrain
+ * whose drive() is stubbed out and once through to the simulated Talons.
+ *
+ * <p>Each benchmark builds only the drivetrain it uses, so the measured
+ * loop shares the fork with one odometry thread, as on the robot, and the
+ * status frame budget counts one drivetrain.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriveCommandBenchmark {
+    private static final class StubDriveTrain extends DriveTrain {
+        private double forwardSpeed;
+        private double rotation;
+
+        private StubDriveTrain() {
+            super(5, 10);
+        }
+
+        @Override
+        public void drive(double forwardSpeed, double rotation) {
+            this.forwardSpeed = forwardSpeed;
+            this.rotation = rotation;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Stubbed {
+        private StubDriveTrain driveTrain;
+        private DriveCommand   command;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            DTXboxController controller = controller();
+            driveTrain = new StubDriveTrain();
+            command = new DriveCommand(driveTrain, controller);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Simulated {
+        private DriveCommand command;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            DTXboxController controller = controller();
+            command = new DriveCommand(new DriveTrain(5, 10), controller);
+        }
+    }
+
+    /**
+     * @return a controller holding the sticks part way forwards and right
+     */
+    private static DTXboxController controller() {
+        HAL.initialize(500, 0);
+        DTXboxController controller = new DTXboxController(0);
+
+        XboxControllerSim sim = new XboxControllerSim(0);
+        sim.setLeftY(-0.8);
+        sim.setRightX(0.4);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+        controller.update();
+        return controller;
+    }
+
+    @Benchmark
+    public double executeStubbedDriveTrain(Stubbed state) {
+        state.command.execute();
+        return state.driveTrain.forwardSpeed + state.driveTrain.rotation;
+    }
+
+    @Benchmark
+    public void executeSimDriveTrain(Simulated state) {
+        state.command.execute();
+    }
+}
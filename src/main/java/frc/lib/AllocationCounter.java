@@ -0,0 +1,11 @@
+package frc.lib;
+
+/**
+ * Bytes allocated so far by the calling thread, for
+ * {@link LoopProfiler#trackAllocations(AllocationCounter)}. The allocation
+ * test implements it on the HotSpot ThreadMXBean, so the robot code never
+ * depends on com.sun.management.
+ */
+public interface AllocationCounter {
+    long threadAllocatedBytes();
+}
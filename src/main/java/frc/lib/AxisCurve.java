@@ -0,0 +1,148 @@
+package frc.lib;
+
+/**
+ * Response shaping for one controller axis: deadband, response curve, scale
+ * and clamp, applied in that order, then an optional limit on how fast the
+ * output may move away from zero. Set up
+ * fluently and {@link #compile()} into a {@link Table}; the static stages are
+ * sampled into a lookup table once, so reading a shaped axis is one clamp and
+ * one interpolation however many stages are configured. Every stage keeps the
+ * sign of the input.
+ */
+public final class AxisCurve {
+    // Odd so that zero and both ends fall exactly on entries, 1/128 apart
+    private static final int    TABLE_SIZE = 257;
+    private static final double HALF_STEPS = (TABLE_SIZE - 1) / 2D;
+
+    private double deadband;
+    private double exponent = 1;
+    private double cubicWeight;
+    private double scale = 1;
+    private double clamp = 1;
+    private double slewRate;
+
+    /**
+     * Zeroes inputs within <code>deadband</code> of center and rescales the
+     * rest so the output still starts at zero and reaches full scale.
+     */
+    public AxisCurve deadband(double deadband) {
+        this.deadband = deadband;
+        return this;
+    }
+
+    /**
+     * Raises the magnitude to <code>exponent</code>; 2 is the usual squared
+     * response.
+     */
+    public AxisCurve power(double exponent) {
+        this.exponent = exponent;
+        return this;
+    }
+
+    /**
+     * Blends in a cubic, <code>(1 - weight) x + weight x^3</code>, for fine
+     * control near center with a linear feel further out.
+     */
+    public AxisCurve cubic(double weight) {
+        this.cubicWeight = weight;
+        return this;
+    }
+
+    public AxisCurve scale(double scale) {
+        this.scale = scale;
+        return this;
+    }
+
+    /**
+     * Caps the output magnitude after scaling.
+     */
+    public AxisCurve clamp(double limit) {
+        this.clamp = limit;
+        return this;
+    }
+
+    /**
+     * Limits how fast the shaped output may grow away from zero. Moves toward
+     * zero are never limited, so letting go of the stick stops at once, and a
+     * reversal drops straight to zero and ramps up from there.
+     *
+     * @param unitsPerSecond
+     *        Largest increase in magnitude per second, 0 for no limit
+     */
+    public AxisCurve slewRate(double unitsPerSecond) {
+        this.slewRate = unitsPerSecond;
+        return this;
+    }
+
+    /**
+     * Runs the static stages directly. Only for building the table; read
+     * axes through a compiled {@link Table}.
+     */
+    public double evaluate(double input) {
+        double magnitude = Math.min(Math.abs(input), 1);
+        if (magnitude <= this.deadband) {
+            return 0;
+        }
+        magnitude = (magnitude - this.deadband) / (1 - this.deadband);
+        magnitude = Math.pow(magnitude, this.exponent);
+        magnitude = (1 - this.cubicWeight) * magnitude + this.cubicWeight * magnitude * magnitude * magnitude;
+        magnitude = Math.min(magnitude * this.scale, this.clamp);
+        return Math.copySign(magnitude, input);
+    }
+
+    public Table compile() {
+        double[] values = new double[TABLE_SIZE];
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            values[i] = evaluate(i / HALF_STEPS - 1);
+        }
+        return new Table(values, this.slewRate);
+    }
+
+    /**
+     * A compiled curve. Immutable, so one table can serve any number of
+     * axes and profiles.
+     */
+    public static final class Table {
+        private final double[] values;
+        private final double   slewRate;
+
+        private Table(double[] values, double slewRate) {
+            this.values = values;
+            this.slewRate = slewRate;
+        }
+
+        /**
+         * @return the static stages for <code>input</code>, interpolated
+         *         between the two nearest entries
+         */
+        public double lookup(double input) {
+            double position = (Math.max(-1, Math.min(1, input)) + 1) * HALF_STEPS;
+            int index = Math.min((int) position, TABLE_SIZE - 2);
+            double fraction = position - index;
+            return this.values[index] + (this.values[index + 1] - this.values[index]) * fraction;
+        }
+
+        /**
+         * @param previous
+         *        Output of the last call for this axis
+         * @param dtSeconds
+         *        Time since that call
+         * @return the shaped value, its growth away from zero slew limited
+         *         from <code>previous</code>
+         */
+        public double apply(double input, double previous, double dtSeconds) {
+            double target = lookup(input);
+            if (this.slewRate <= 0) {
+                return target;
+            }
+            // A reversal passes through zero, which is a move toward it
+            if (Math.signum(target) != Math.signum(previous)) {
+                previous = 0;
+            }
+            if (Math.abs(target) <= Math.abs(previous)) {
+                return target;
+            }
+            return previous + Math.copySign(Math.min(this.slewRate * dtSeconds, Math.abs(target - previous)), target);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package frc.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Fixed-size binary records written by one producer thread into a
+ * preallocated off-heap ring buffer and drained in batches by a background
+ * thread into a memory-mapped file. The producer never blocks: if the writer
+ * falls behind, new records are dropped and counted.
+ *
+ * <p>The file starts with the magic <code>CAB1</code>, the record size and the
+ * schema as a UTF-8 string of <code>name:type</code> pairs, followed by the
+ * records. The unused tail of the last mapped chunk is zero filled.
+ *
+ * <p>The writer forces what it has written out to storage every second, at
+ * the end of each mapped chunk and when asked to by {@link #force()}, so a
+ * power cut loses at most the last second or so of records.
+ */
+public final class BinaryRingLog implements AutoCloseable {
+    private static final int  MAGIC              = 0x43414231;
+    private static final long MAP_CHUNK_BYTES    = 4L << 20;
+    private static final long DRAIN_PERIOD_NANOS = 50_000_000L;
+    private static final long FORCE_PERIOD_NANOS = 1_000_000_000L;
+
+    private static volatile ThreadPlacement writerPlacement = ThreadPlacement.DEFAULT;
+
+    private final ByteBuffer ring;
+    private final ByteBuffer drainView;
+    private final int        recordSize;
+    private final int        capacity;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread     writer;
+
+    private final FileChannel channel;
+    private MappedByteBuffer  mapped;
+    private long              mappedPosition;
+    private long              forcedPosition;
+    private volatile boolean  running = true;
+    private volatile boolean  forceRequested;
+    private boolean           closed;
+
+    // Producer state
+    private int writeOffset;
+    private int writePosition;
+
+    /**
+     * @param file
+     *        File to create
+     * @param schema
+     *        Comma separated <code>name:type</code> pairs where type is one of
+     *        <code>long</code>, <code>double</code>, <code>int</code> or
+     *        <code>float</code>. Records must be written in this order.
+     * @param capacity
+     *        Number of records the ring can hold, rounded up to a power of two
+     */
+    public BinaryRingLog(Path file, String schema, int capacity) throws IOException {
+        this.recordSize = recordSize(schema);
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = ByteBuffer.allocateDirect(this.capacity * this.recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.drainView = this.ring.duplicate();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        remap(0);
+        this.mapped.putInt(MAGIC).putInt(this.recordSize).putInt(schemaBytes.length).put(schemaBytes);
+
+        this.writer = new Thread(this::drainLoop, "BinaryRingLog");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Sets where the writer threads of logs opened from now on run, so file
+     * writes can be kept off the robot loop's CPU.
+     */
+    public static void setWriterPlacement(ThreadPlacement placement) {
+        writerPlacement = placement;
+    }
+
+    /**
+     * Deletes old logs in <code>directory</code> to make room for a new one.
+     * Keeps the newest <code>keepFiles - 1</code> files, fewer if they would
+     * total more than <code>keepBytes</code>, and deletes the rest. Call
+     * before opening the new log.
+     *
+     * @param glob
+     *        Pattern the log files match, such as <code>telemetry-*.bin</code>
+     */
+    public static void deleteOldLogs(Path directory, String glob, int keepFiles, long keepBytes) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not list old logs in " + directory, e.getStackTrace());
+            return;
+        }
+        files.sort(Comparator.comparing(BinaryRingLog::lastModified).reversed());
+
+        int kept = 0;
+        long keptBytes = 0;
+        for (Path file : files) {
+            try {
+                long size = Files.size(file);
+                if (kept < keepFiles - 1 && keptBytes + size <= keepBytes) {
+                    kept++;
+                    keptBytes += size;
+                } else {
+                    Files.delete(file);
+                }
+            } catch (IOException e) {
+                DriverStation.reportWarning("Could not delete old log " + file, false);
+            }
+        }
+    }
+
+    /**
+     * Starts a record. If this returns false the ring is full, the record has
+     * been counted as dropped and no <code>put</code> or {@link #commit()}
+     * calls should follow.
+     */
+    public boolean begin() {
+        long h = this.head.get();
+        if (h - this.tail.get() >= this.capacity) {
+            this.dropped.lazySet(this.dropped.get() + 1);
+            return false;
+        }
+        this.writeOffset = (int) (h & (this.capacity - 1)) * this.recordSize;
+        this.writePosition = 0;
+        return true;
+    }
+
+    public void putLong(long value) {
+        this.ring.putLong(this.writeOffset + this.writePosition, value);
+        this.writePosition += Long.BYTES;
+    }
+
+    public void putDouble(double value) {
+        this.ring.putDouble(this.writeOffset + this.writePosition, value);
+        this.writePosition += Double.BYTES;
+    }
+
+    public void putInt(int value) {
+        this.ring.putInt(this.writeOffset + this.writePosition, value);
+        this.writePosition += Integer.BYTES;
+    }
+
+    public void putFloat(float value) {
+        this.ring.putFloat(this.writeOffset + this.writePosition, value);
+        this.writePosition += Float.BYTES;
+    }
+
+    /**
+     * Publishes the record started by {@link #begin()} to the writer thread.
+     */
+    public void commit() {
+        this.head.lazySet(this.head.get() + 1);
+    }
+
+    public long getWrittenRecords() {
+        return this.tail.get();
+    }
+
+    public long getDroppedRecords() {
+        return this.dropped.get();
+    }
+
+    public long getBufferedRecords() {
+        return this.head.get() - this.tail.get();
+    }
+
+    public Thread getWriterThread() {
+        return this.writer;
+    }
+
+    /**
+     * Asks the writer to write out everything committed so far and force it
+     * to storage. Returns without waiting for it.
+     */
+    public void force() {
+        this.forceRequested = true;
+        LockSupport.unpark(this.writer);
+    }
+
+    /**
+     * Stops the writer once it has written and forced everything committed.
+     * Only the first call does anything, so it is safe from a shutdown hook
+     * as well.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.running = false;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.truncate(this.mappedPosition + this.mapped.position());
+        this.channel.close();
+    }
+
+    private void drainLoop() {
+        writerPlacement.applyToCurrentThread("BinaryRingLog");
+        long lastForce = System.nanoTime();
+        try {
+            while (this.running) {
+                drain();
+                long now = System.nanoTime();
+                if (this.forceRequested || now - lastForce >= FORCE_PERIOD_NANOS) {
+                    this.forceRequested = false;
+                    lastForce = now;
+                    forceWritten();
+                }
+                LockSupport.parkNanos(DRAIN_PERIOD_NANOS);
+            }
+            drain();
+            forceWritten();
+        } catch (IOException e) {
+            DriverStation.reportError("Telemetry log writer stopped: " + e.getMessage(), e.getStackTrace());
+        }
+    }
+
+    private void drain() throws IOException {
+        long t = this.tail.get();
+        long h = this.head.get();
+        while (t < h) {
+            int start = (int) (t & (this.capacity - 1));
+            int count = (int) Math.min(h - t, this.capacity - start);
+            this.drainView.limit((start + count) * this.recordSize).position(start * this.recordSize);
+            while (this.drainView.hasRemaining()) {
+                if (!this.mapped.hasRemaining()) {
+                    remap(this.mappedPosition + this.mapped.position());
+                }
+                int chunk = Math.min(this.drainView.remaining(), this.mapped.remaining());
+                int limit = this.drainView.limit();
+                this.drainView.limit(this.drainView.position() + chunk);
+                this.mapped.put(this.drainView);
+                this.drainView.limit(limit);
+            }
+            t += count;
+            this.tail.lazySet(t);
+        }
+    }
+
+    /**
+     * Forces the current chunk to storage if anything was written to it since
+     * the last force.
+     */
+    private void forceWritten() {
+        long position = this.mappedPosition + this.mapped.position();
+        if (position != this.forcedPosition) {
+            this.mapped.force();
+            this.forcedPosition = position;
+        }
+    }
+
+    private void remap(long position) throws IOException {
+        // The finished chunk is unmapped once nothing refers to it, so it is forced now
+        if (this.mapped != null) {
+            forceWritten();
+        }
+        this.mapped = this.channel.map(FileChannel.MapMode.READ_WRITE, position, MAP_CHUNK_BYTES);
+        this.mapped.order(ByteOrder.LITTLE_ENDIAN);
+        this.mappedPosition = position;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            // Treated as oldest, so it is the first to go
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static int recordSize(String schema) {
+        int size = 0;
+        for (String field : schema.split(",")) {
+            String type = field.substring(field.indexOf(':') + 1).trim();
+            switch (type) {
+                case "long":
+                case "double":
+                    size += 8;
+                    break;
+                case "int":
+                case "float":
+                    size += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown field type in log schema: " + field);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,60 @@
+package frc.lib;
+
+import edu.wpi.first.hal.can.CANJNI;
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Publishes CAN bus utilization and error counters next to the status frame
+ * budget, once per publish interval. Reads into a preallocated
+ * {@link CANStatus} rather than RobotController.getCANStatus(), which
+ * allocates one per call.
+ */
+public class CanBusMonitor {
+    private static final int PUBLISH_INTERVAL_LOOPS = 50;
+
+    // Extended CAN frame with 8 data bytes, including worst case bit stuffing
+    private static final double BITS_PER_FRAME = 135;
+    private static final double BUS_BITS_PER_SECOND = 1_000_000;
+
+    private final CANStatus       status = new CANStatus();
+    private final DoublePublisher utilization;
+    private final DoublePublisher budgetedUtilization;
+    private final DoublePublisher busOffCount;
+    private final DoublePublisher txFullCount;
+    private final DoublePublisher receiveErrorCount;
+    private final DoublePublisher transmitErrorCount;
+
+    private int loopsSincePublish;
+
+    public CanBusMonitor() {
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("CAN");
+        this.utilization = table.getDoubleTopic("Utilization %").publish();
+        this.budgetedUtilization = table.getDoubleTopic("Budgeted status frames %").publish();
+        this.busOffCount = table.getDoubleTopic("Bus off count").publish();
+        this.txFullCount = table.getDoubleTopic("TX full count").publish();
+        this.receiveErrorCount = table.getDoubleTopic("RX error count").publish();
+        this.transmitErrorCount = table.getDoubleTopic("TX error count").publish();
+    }
+
+    /**
+     * Call once per loop.
+     */
+    public void periodic() {
+        if (++this.loopsSincePublish < PUBLISH_INTERVAL_LOOPS) {
+            return;
+        }
+        this.loopsSincePublish = 0;
+
+        CANJNI.getCANStatus(this.status);
+        this.utilization.set(this.status.percentBusUtilization * 100);
+        this.budgetedUtilization.set(
+                100 * StatusFrameBudget.getTotalFramesPerSecond() * BITS_PER_FRAME / BUS_BITS_PER_SECOND);
+        this.busOffCount.set(this.status.busOffCount);
+        this.txFullCount.set(this.status.txFullCount);
+        this.receiveErrorCount.set(this.status.receiveErrorCount);
+        this.transmitErrorCount.set(this.status.transmitErrorCount);
+    }
+}
@@ -0,0 +1,186 @@
+package frc.lib;
+
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.TalonSRXControlMode;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.motorcontrol.MotorController;
+
+/**
+ * Wraps a Talon SRX and drops setpoints that match the last one sent, within a
+ * tolerance. A write is still forced through after a heartbeat interval so any
+ * motor safety watching the Talon keeps getting fed.
+ *
+ * <p>Phoenix resends the control frame on its own period whether or not
+ * set() is called, so a dropped setpoint saves the JNI call and the work
+ * behind it on the robot loop, not CAN bus traffic. The sent and skipped
+ * counts are calls into Phoenix, not frames on the bus.
+ *
+ * <p>With a {@link LatencyTrace} attached, a caller can tag the next setpoint
+ * with the acquisition time of the input behind it, and the trace records the
+ * latency when a changed setpoint actually reaches the Talon.
+ */
+public class CoalescingMotorOutput implements MotorController {
+    private static final double DEFAULT_TOLERANCE        = 1e-4;
+    private static final long   DEFAULT_HEARTBEAT_MICROS = 50_000;
+
+    private final WPI_TalonSRX motor;
+    private final double       tolerance;
+    private final long         heartbeatMicros;
+
+    private TalonSRXControlMode lastMode;
+    private double              lastValue;
+    private double              lastFeedForward;
+    private long                lastWriteMicros;
+    private long                sentWrites;
+    private long                skippedWrites;
+    private LatencyTrace        latencyTrace;
+    private long                inputMicros;
+
+    public CoalescingMotorOutput(WPI_TalonSRX motor) {
+        this(motor, DEFAULT_TOLERANCE, DEFAULT_HEARTBEAT_MICROS);
+    }
+
+    /**
+     * @param motor
+     *        Talon to write to
+     * @param tolerance
+     *        Largest change from the last setpoint that is still dropped
+     * @param heartbeatMicros
+     *        Longest time between writes, in microseconds, before a repeated
+     *        setpoint is sent anyway
+     */
+    public CoalescingMotorOutput(WPI_TalonSRX motor, double tolerance, long heartbeatMicros) {
+        this.motor = motor;
+        this.tolerance = tolerance;
+        this.heartbeatMicros = heartbeatMicros;
+    }
+
+    public void set(TalonSRXControlMode mode, double value) {
+        boolean changed = isChange(mode, value, 0D);
+        if (isRedundant(mode, value, 0D)) {
+            this.inputMicros = 0;
+            return;
+        }
+        this.motor.set(mode, value);
+        traceWrite(changed);
+    }
+
+    /**
+     * Sets a closed-loop target with an arbitrary feedforward added by the
+     * Talon, coalesced on both values.
+     *
+     * @param feedForward
+     *        Feedforward in percent output, -1 to 1
+     */
+    public void set(TalonSRXControlMode mode, double value, double feedForward) {
+        boolean changed = isChange(mode, value, feedForward);
+        if (isRedundant(mode, value, feedForward)) {
+            this.inputMicros = 0;
+            return;
+        }
+        this.motor.set(mode, value, DemandType.ArbitraryFeedForward, feedForward);
+        traceWrite(changed);
+    }
+
+    /**
+     * Records input-to-actuation latency for this output's writes into the
+     * given trace, which may be shared by the outputs of one mechanism.
+     */
+    public void setLatencyTrace(LatencyTrace latencyTrace) {
+        this.latencyTrace = latencyTrace;
+    }
+
+    /**
+     * Tags the next setpoint with the input behind it. Applies to the next
+     * set call only.
+     *
+     * @param inputMicros
+     *        FPGA time the input was acquired
+     */
+    public void tagInput(long inputMicros) {
+        this.inputMicros = inputMicros;
+    }
+
+    @Override
+    public void set(double speed) {
+        set(TalonSRXControlMode.PercentOutput, speed);
+    }
+
+    @Override
+    public double get() {
+        return this.lastMode == TalonSRXControlMode.PercentOutput ? this.lastValue : this.motor.getMotorOutputPercent();
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+        this.motor.setInverted(isInverted);
+    }
+
+    @Override
+    public boolean getInverted() {
+        return this.motor.getInverted();
+    }
+
+    @Override
+    public void disable() {
+        this.motor.disable();
+        this.lastMode = null;
+    }
+
+    @Override
+    public void stopMotor() {
+        this.motor.stopMotor();
+        this.lastMode = null;
+    }
+
+    public WPI_TalonSRX getMotor() {
+        return this.motor;
+    }
+
+    /**
+     * @return number of setpoints actually passed to Phoenix
+     */
+    public long getSentWrites() {
+        return this.sentWrites;
+    }
+
+    /**
+     * @return number of setpoints dropped because they matched the last write
+     */
+    public long getSkippedWrites() {
+        return this.skippedWrites;
+    }
+
+    private boolean isChange(TalonSRXControlMode mode, double value, double feedForward) {
+        return mode != this.lastMode
+                || Math.abs(value - this.lastValue) > this.tolerance
+                || Math.abs(feedForward - this.lastFeedForward) > this.tolerance;
+    }
+
+    // Heartbeat writes repeat the last setpoint, so only changes count as actuating an input
+    private void traceWrite(boolean changed) {
+        if (changed && this.latencyTrace != null) {
+            this.latencyTrace.actuated(this.inputMicros, this.lastWriteMicros);
+        }
+        this.inputMicros = 0;
+    }
+
+    private boolean isRedundant(TalonSRXControlMode mode, double value, double feedForward) {
+        long now = RobotController.getFPGATime();
+        if (mode == this.lastMode
+                && Math.abs(value - this.lastValue) <= this.tolerance
+                && Math.abs(feedForward - this.lastFeedForward) <= this.tolerance
+                && now - this.lastWriteMicros < this.heartbeatMicros) {
+            this.skippedWrites++;
+            return true;
+        }
+        this.lastMode = mode;
+        this.lastValue = value;
+        this.lastFeedForward = feedForward;
+        this.lastWriteMicros = now;
+        this.sentWrites++;
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+package frc.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * A trajectory generated ahead of time and stored as fixed-size little-endian
+ * samples, so the robot maps the file and reads states straight out of it
+ * instead of generating or parsing anything at match start. Sampling copies
+ * into a caller-owned {@link State} and never allocates.
+ *
+ * <p>Layout: magic, sample count, total time, then per sample the time, x, y,
+ * heading, velocity, acceleration and curvature, all doubles.
+ */
+public final class CompiledTrajectory {
+    public static final String EXTENSION = ".traj";
+
+    private static final int MAGIC          = 0x4A415254; // "TRAJ" little-endian
+    private static final int HEADER_BYTES   = 2 * Integer.BYTES + Double.BYTES;
+    private static final int SAMPLE_DOUBLES = 7;
+    private static final int SAMPLE_BYTES   = SAMPLE_DOUBLES * Double.BYTES;
+
+    /**
+     * One trajectory state, in meters, radians and seconds.
+     */
+    public static final class State {
+        public double timeSeconds;
+        public double x;
+        public double y;
+        public double heading;
+        public double velocity;
+        public double acceleration;
+        public double curvature;
+    }
+
+    private final String     name;
+    private final ByteBuffer samples;
+    private final int        count;
+    private final double     totalTimeSeconds;
+    private int              cursor;
+
+    private CompiledTrajectory(String name, ByteBuffer samples) {
+        this.name = name;
+        this.samples = samples;
+        if (samples.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException(name + " is not a compiled trajectory");
+        }
+        this.count = samples.getInt(Integer.BYTES);
+        this.totalTimeSeconds = samples.getDouble(2 * Integer.BYTES);
+        if (this.count < 1 || samples.capacity() < HEADER_BYTES + this.count * SAMPLE_BYTES) {
+            throw new IllegalArgumentException(name + " is truncated");
+        }
+    }
+
+    /**
+     * Writes a generated trajectory. Build time only.
+     */
+    public static void write(Trajectory trajectory, Path file) throws IOException {
+        int count = trajectory.getStates().size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * SAMPLE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(count).putDouble(trajectory.getTotalTimeSeconds());
+        for (Trajectory.State state : trajectory.getStates()) {
+            buffer.putDouble(state.timeSeconds)
+                  .putDouble(state.poseMeters.getX())
+                  .putDouble(state.poseMeters.getY())
+                  .putDouble(state.poseMeters.getRotation().getRadians())
+                  .putDouble(state.velocityMetersPerSecond)
+                  .putDouble(state.accelerationMetersPerSecondSq)
+                  .putDouble(state.curvatureRadPerMeter);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Maps a compiled trajectory. The name is the file name without its
+     * extension.
+     */
+    public static CompiledTrajectory load(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String name = fileName.endsWith(EXTENSION)
+                ? fileName.substring(0, fileName.length() - EXTENSION.length())
+                : fileName;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Files.size(file));
+            return new CompiledTrajectory(name, mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public double getTotalTimeSeconds() {
+        return this.totalTimeSeconds;
+    }
+
+    /**
+     * Copies the state at a time into <code>out</code>, interpolating between
+     * samples. Fastest when called with increasing times, as a follower does.
+     */
+    public void sample(double timeSeconds, State out) {
+        if (timeSeconds <= time(0)) {
+            read(0, out);
+            return;
+        }
+        if (timeSeconds >= time(this.count - 1)) {
+            read(this.count - 1, out);
+            return;
+        }
+        if (time(this.cursor) > timeSeconds) {
+            this.cursor = 0;
+        }
+        while (time(this.cursor + 1) < timeSeconds) {
+            this.cursor++;
+        }
+
+        int i = this.cursor;
+        double t0 = time(i);
+        double t1 = time(i + 1);
+        double f = t1 > t0 ? (timeSeconds - t0) / (t1 - t0) : 0;
+        out.timeSeconds = timeSeconds;
+        out.x = lerp(i, 1, f);
+        out.y = lerp(i, 2, f);
+        double h0 = field(i, 3);
+        out.heading = h0 + f * Math.IEEEremainder(field(i + 1, 3) - h0, 2 * Math.PI);
+        out.velocity = lerp(i, 4, f);
+        out.acceleration = lerp(i, 5, f);
+        out.curvature = lerp(i, 6, f);
+    }
+
+    private void read(int i, State out) {
+        out.timeSeconds = field(i, 0);
+        out.x = field(i, 1);
+        out.y = field(i, 2);
+        out.heading = field(i, 3);
+        out.velocity = field(i, 4);
+        out.acceleration = field(i, 5);
+        out.curvature = field(i, 6);
+    }
+
+    private double time(int i) {
+        return field(i, 0);
+    }
+
+    private double lerp(int i, int field, double f) {
+        double a = field(i, field);
+        return a + f * (field(i + 1, field) - a);
+    }
+
+    private double field(int i, int field) {
+        return this.samples.getDouble(HEADER_BYTES + i * SAMPLE_BYTES + field * Double.BYTES);
+    }
+}
@@ -0,0 +1,159 @@
+package frc.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A controller input stream, one row per loop, stored in the
+ * {@link BinaryRingLog} format. Rows carry the raw axes, buttons and POV
+ * together with the FPGA timestamp and robot mode they were captured in, so
+ * a replay can reproduce both the input and its timing.
+ */
+public final class ControllerRecording {
+    public static final int MODE_DISABLED   = 0;
+    public static final int MODE_TELEOP     = 1;
+    public static final int MODE_AUTONOMOUS = 2;
+    public static final int MODE_TEST       = 3;
+
+    private static final int AXES = 6;
+
+    static final String SCHEMA = "timestamp:long,mode:int,"
+            + "leftX:double,leftY:double,rightX:double,rightY:double,leftTrigger:double,rightTrigger:double,"
+            + "buttons:int,pov:int";
+
+    private final long[]   timestamps;
+    private final int[]    modes;
+    private final double[] axes;
+    private final int[]    buttons;
+    private final int[]    povs;
+    private int            cursor = -1;
+
+    private ControllerRecording(int rows) {
+        this.timestamps = new long[rows];
+        this.modes = new int[rows];
+        this.axes = new double[rows * AXES];
+        this.buttons = new int[rows];
+        this.povs = new int[rows];
+    }
+
+    /**
+     * Opens a new recording file. Rows are added with
+     * {@link #record(BinaryRingLog, long, int, DTXboxController)}.
+     */
+    public static BinaryRingLog create(Path file) throws IOException {
+        return new BinaryRingLog(file, SCHEMA, 1024);
+    }
+
+    /**
+     * Appends the controller's current snapshot. Never blocks.
+     */
+    public static void record(BinaryRingLog log, long timestampMicros, int mode, DTXboxController controller) {
+        if (!log.begin()) {
+            return;
+        }
+        DTXboxController.Snapshot s = controller.snapshot;
+        log.putLong(timestampMicros);
+        log.putInt(mode);
+        log.putDouble(s.leftX);
+        log.putDouble(s.leftY);
+        log.putDouble(s.rightX);
+        log.putDouble(s.rightY);
+        log.putDouble(s.leftTrigger);
+        log.putDouble(s.rightTrigger);
+        log.putInt(s.buttons);
+        log.putInt(s.pov);
+        log.commit();
+    }
+
+    /**
+     * Reads a whole recording into memory.
+     */
+    public static ControllerRecording load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.getInt(); // magic
+        int recordSize = buffer.getInt();
+        byte[] schema = new byte[buffer.getInt()];
+        buffer.get(schema);
+        if (!SCHEMA.equals(new String(schema, StandardCharsets.UTF_8))) {
+            throw new IOException(file + " is not a controller recording");
+        }
+
+        ControllerRecording recording = new ControllerRecording(buffer.remaining() / recordSize);
+        int rows = 0;
+        while (buffer.remaining() >= recordSize) {
+            long timestamp = buffer.getLong();
+            if (timestamp == 0) {
+                // Zero filled tail of the last mapped chunk
+                break;
+            }
+            recording.timestamps[rows] = timestamp;
+            recording.modes[rows] = buffer.getInt();
+            for (int axis = 0; axis < AXES; axis++) {
+                recording.axes[rows * AXES + axis] = buffer.getDouble();
+            }
+            recording.buttons[rows] = buffer.getInt();
+            recording.povs[rows] = buffer.getInt();
+            rows++;
+        }
+        return rows == recording.timestamps.length ? recording : recording.truncate(rows);
+    }
+
+    public int size() {
+        return this.timestamps.length;
+    }
+
+    /**
+     * Moves to the next row.
+     *
+     * @return false once every row has been replayed
+     */
+    public boolean advance() {
+        if (this.cursor + 1 >= this.timestamps.length) {
+            return false;
+        }
+        this.cursor++;
+        return true;
+    }
+
+    public long getTimestampMicros() {
+        return this.timestamps[this.cursor];
+    }
+
+    /**
+     * @return timestamp of the row after the current one, or of the current
+     *         row if it is the last
+     */
+    public long getNextTimestampMicros() {
+        return this.timestamps[Math.min(this.cursor + 1, this.timestamps.length - 1)];
+    }
+
+    public int getMode() {
+        return this.modes[this.cursor];
+    }
+
+    void applyTo(DTXboxController controller) {
+        int row = Math.max(this.cursor, 0);
+        int base = row * AXES;
+        controller.setAxes(this.axes[base], this.axes[base + 1], this.axes[base + 2], this.axes[base + 3],
+                this.axes[base + 4], this.axes[base + 5]);
+        controller.setButtons(this.buttons[row], this.povs[row]);
+    }
+
+    private ControllerRecording truncate(int rows) {
+        ControllerRecording copy = new ControllerRecording(rows);
+        System.arraycopy(this.timestamps, 0, copy.timestamps, 0, rows);
+        System.arraycopy(this.modes, 0, copy.modes, 0, rows);
+        System.arraycopy(this.axes, 0, copy.axes, 0, rows * AXES);
+        System.arraycopy(this.buttons, 0, copy.buttons, 0, rows);
+        System.arraycopy(this.povs, 0, copy.povs, 0, rows);
+        return copy;
+    }
+}
@@ -1,9 +1,9 @@
 package frc.lib;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
+import edu.wpi.first.hal.DriverStationJNI;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 
@@ -22,30 +22,72 @@ public class DTXboxController {
         }
     }
 
-    private class RumbleTask extends TimerTask {
-        @Override
-        public void run() {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime >= leftTimeout) {
-                leftPower = 0;
-            }
-            if (currentTime >= rightTimeout) {
-                rightPower = 0;
-            }
-            controller.setRumble(RumbleType.kLeftRumble, leftPower);
-            controller.setRumble(RumbleType.kRightRumble, rightPower);
-        }
+    /**
+     * Axes that can be shaped by a {@link ShapingProfile}. The sticks are
+     * forward and right positive, as the getters return them.
+     */
+    public enum Axis {
+        LEFT_X,
+        LEFT_Y,
+        RIGHT_X,
+        RIGHT_Y,
+        LEFT_TRIGGER,
+        RIGHT_TRIGGER
+    }
+
+    static final int AXIS_COUNT = Axis.values().length;
+
+    /**
+     * Primitive copy of every axis, button and the POV. Filled once per loop by
+     * {@link DTXboxController#update()} so every consumer sees the same input.
+     */
+    static final class Snapshot {
+        double leftX;
+        double leftY;
+        double rightX;
+        double rightY;
+        double leftTrigger;
+        double rightTrigger;
+        int    buttons;
+        int    pressed;
+        int    released;
+        int    pov = -1;
     }
 
-    private static final Timer  RUMBLE_TIMER   = new Timer("Xbox_Rumble");
     private static final double AXIS_THRESHOLD = 0.5;
 
-    private long   leftTimeout;
-    private long   rightTimeout;
-    private double leftPower;
-    private double rightPower;
+    private static final double TELEMETRY_PERIOD         = 0.1;
+    private static final double TELEMETRY_AXIS_THRESHOLD = 0.01;
+
+    private static final int LEFT_X_AXIS        = XboxController.Axis.kLeftX.value;
+    private static final int LEFT_Y_AXIS        = XboxController.Axis.kLeftY.value;
+    private static final int RIGHT_X_AXIS       = XboxController.Axis.kRightX.value;
+    private static final int RIGHT_Y_AXIS       = XboxController.Axis.kRightY.value;
+    private static final int LEFT_TRIGGER_AXIS  = XboxController.Axis.kLeftTrigger.value;
+    private static final int RIGHT_TRIGGER_AXIS = XboxController.Axis.kRightTrigger.value;
+
+    private static final int A_BUTTON           = buttonMask(XboxController.Button.kA);
+    private static final int B_BUTTON           = buttonMask(XboxController.Button.kB);
+    private static final int X_BUTTON           = buttonMask(XboxController.Button.kX);
+    private static final int Y_BUTTON           = buttonMask(XboxController.Button.kY);
+    private static final int START_BUTTON       = buttonMask(XboxController.Button.kStart);
+    private static final int BACK_BUTTON        = buttonMask(XboxController.Button.kBack);
+    private static final int LEFT_STICK_BUTTON  = buttonMask(XboxController.Button.kLeftStick);
+    private static final int RIGHT_STICK_BUTTON = buttonMask(XboxController.Button.kRightStick);
+    private static final int LEFT_BUMPER        = buttonMask(XboxController.Button.kLeftBumper);
+    private static final int RIGHT_BUMPER       = buttonMask(XboxController.Button.kRightBumper);
+
     private double deadBand;
     private double axisThreshold;
+    private long   inputChangedMicros;
+
+    private ShapingProfile profile;
+    private final double[] shaped = new double[AXIS_COUNT];
+    private long           lastShapedMicros;
+
+    private ControllerRecording replay;
+    // Axes straight from the HAL, for updateAxes
+    private final float[] rawAxes = new float[DriverStationJNI.kMaxJoystickAxes];
 
     public final Trigger aButton          = new Trigger(this::getAButton);
     public final Trigger bButton          = new Trigger(this::getBButton);
@@ -70,16 +112,199 @@ public class DTXboxController {
     public final Trigger rightStickYNeg = new Trigger(() -> getRightStickY() <= -axisThreshold);
 
     private final XboxController controller;
+    private final int            port;
+    final Snapshot               snapshot = new Snapshot();
+    private final RumbleChannel  leftRumble  = new RumbleChannel(RumbleType.kLeftRumble);
+    private final RumbleChannel  rightRumble = new RumbleChannel(RumbleType.kRightRumble);
 
     public DTXboxController(int port) {
         this.controller = new XboxController(port);
+        this.port = port;
         this.deadBand = 0D;
         this.axisThreshold = AXIS_THRESHOLD;
-        RUMBLE_TIMER.scheduleAtFixedRate(new RumbleTask(), 10, 20);
+
+        String table = "Controller " + port + "/";
+        DashboardTelemetry.addDouble(table + "Left X", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD, this::getLeftStickX);
+        DashboardTelemetry.addDouble(table + "Left Y", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD, this::getLeftStickY);
+        DashboardTelemetry.addDouble(table + "Right X", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD, this::getRightStickX);
+        DashboardTelemetry.addDouble(table + "Right Y", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD, this::getRightStickY);
+        DashboardTelemetry.addDouble(table + "Left Trigger", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD,
+                this::getLeftTrigger);
+        DashboardTelemetry.addDouble(table + "Right Trigger", TELEMETRY_PERIOD, TELEMETRY_AXIS_THRESHOLD,
+                this::getRightTrigger);
+        DashboardTelemetry.addInteger(table + "Buttons", TELEMETRY_PERIOD, this::getButtons);
+        DashboardTelemetry.addInteger(table + "POV", TELEMETRY_PERIOD, this::getDpad);
+    }
+
+    /**
+     * Captures all axes, buttons and the POV from the driver station and
+     * advances the rumble. Call once per loop before the scheduler runs; every
+     * getter and trigger reads from the captured values until the next call,
+     * and the <code>Pressed</code>/<code>Released</code> getters report edges
+     * between consecutive calls.
+     */
+    public void update() {
+        if (this.replay != null) {
+            this.replay.applyTo(this);
+        } else {
+            setAxes(DriverStation.getStickAxis(this.port, LEFT_X_AXIS),
+                    DriverStation.getStickAxis(this.port, LEFT_Y_AXIS),
+                    DriverStation.getStickAxis(this.port, RIGHT_X_AXIS),
+                    DriverStation.getStickAxis(this.port, RIGHT_Y_AXIS),
+                    DriverStation.getStickAxis(this.port, LEFT_TRIGGER_AXIS),
+                    DriverStation.getStickAxis(this.port, RIGHT_TRIGGER_AXIS));
+            setButtons(DriverStation.getStickButtons(this.port), DriverStation.getStickPOV(this.port, 0));
+        }
+
+        long now = RobotController.getFPGATime();
+        this.leftRumble.update(this.controller, now);
+        this.rightRumble.update(this.controller, now);
+    }
+
+    /**
+     * Re-reads only the six axes, from the latest Driver Station packet. Used
+     * by loops faster than the robot loop; buttons, their edges and the rumble
+     * are left to {@link #update()}.
+     *
+     * <p>Reads the HAL's copy of the packet rather than {@link DriverStation},
+     * whose copy only the robot loop refreshes. Enable, mode and every other
+     * joystick stay as the robot loop captured them, so commands in one
+     * scheduler pass all see the same Driver Station state.
+     */
+    public void updateAxes() {
+        if (this.replay != null) {
+            return;
+        }
+        DriverStationJNI.refreshDSData();
+        int count = DriverStationJNI.getJoystickAxes((byte) this.port, this.rawAxes);
+        setAxes(rawAxis(count, LEFT_X_AXIS), rawAxis(count, LEFT_Y_AXIS), rawAxis(count, RIGHT_X_AXIS),
+                rawAxis(count, RIGHT_Y_AXIS), rawAxis(count, LEFT_TRIGGER_AXIS), rawAxis(count, RIGHT_TRIGGER_AXIS));
+    }
+
+    // Zero for an axis the controller does not report, as DriverStation.getStickAxis gives
+    private double rawAxis(int count, int axis) {
+        return axis < count ? this.rawAxes[axis] : 0;
+    }
+
+    /**
+     * Feeds this controller from a recording instead of the driver station.
+     * Each {@link #update()} applies the recording's current row.
+     *
+     * @param recording
+     *        Recording to replay, or <code>null</code> to go back to live input
+     */
+    public void setReplay(ControllerRecording recording) {
+        this.replay = recording;
+    }
+
+    void setAxes(double leftX, double leftY, double rightX, double rightY, double leftTrigger,
+            double rightTrigger) {
+        Snapshot s = this.snapshot;
+        if (leftX != s.leftX || leftY != s.leftY || rightX != s.rightX || rightY != s.rightY
+                || leftTrigger != s.leftTrigger || rightTrigger != s.rightTrigger) {
+            this.inputChangedMicros = RobotController.getFPGATime();
+        }
+        s.leftX = leftX;
+        s.leftY = leftY;
+        s.rightX = rightX;
+        s.rightY = rightY;
+        s.leftTrigger = leftTrigger;
+        s.rightTrigger = rightTrigger;
+        shapeAxes();
+    }
+
+    // Shaped once per capture rather than per read, so the slew limit advances with real time
+    private void shapeAxes() {
+        ShapingProfile p = this.profile;
+        if (p == null) {
+            this.lastShapedMicros = 0;
+            return;
+        }
+        long now = RobotController.getFPGATime();
+        double dt = this.lastShapedMicros == 0 ? Double.POSITIVE_INFINITY : (now - this.lastShapedMicros) / 1e6;
+        this.lastShapedMicros = now;
+        double[] out = this.shaped;
+        Snapshot s = this.snapshot;
+        out[0] = p.shape(0, s.leftX, out[0], dt);
+        out[1] = p.shape(1, -s.leftY, out[1], dt);
+        out[2] = p.shape(2, s.rightX, out[2], dt);
+        out[3] = p.shape(3, -s.rightY, out[3], dt);
+        out[4] = p.shape(4, s.leftTrigger, out[4], dt);
+        out[5] = p.shape(5, s.rightTrigger, out[5], dt);
+    }
+
+    /**
+     * Shapes every axis through <code>profile</code> from the next capture
+     * on. Slew limited axes carry on from their current value.
+     *
+     * @param profile
+     *        Profile to use, or <code>null</code> for raw axes
+     */
+    public void setShapingProfile(ShapingProfile profile) {
+        this.profile = profile;
+    }
+
+    public ShapingProfile getShapingProfile() {
+        return this.profile;
+    }
+
+    /**
+     * @return the axis through the current {@link ShapingProfile}, as of the
+     *         last capture, or the raw axis without a profile
+     */
+    public double getShaped(Axis axis) {
+        if (this.profile == null) {
+            switch (axis) {
+                case LEFT_X:
+                    return this.snapshot.leftX;
+                case LEFT_Y:
+                    return -this.snapshot.leftY;
+                case RIGHT_X:
+                    return this.snapshot.rightX;
+                case RIGHT_Y:
+                    return -this.snapshot.rightY;
+                case LEFT_TRIGGER:
+                    return this.snapshot.leftTrigger;
+                default:
+                    return this.snapshot.rightTrigger;
+            }
+        }
+        return this.shaped[axis.ordinal()];
+    }
+
+    void setButtons(int buttons, int pov) {
+        Snapshot s = this.snapshot;
+        if (buttons != s.buttons || pov != s.pov) {
+            this.inputChangedMicros = RobotController.getFPGATime();
+        }
+        s.pressed = buttons & ~s.buttons;
+        s.released = ~buttons & s.buttons;
+        s.buttons = buttons;
+        s.pov = pov;
+    }
+
+    /**
+     * Acquisition timestamp of the current input, for latency tracing. This is
+     * when the robot first saw the change, at the capture that read it; time
+     * spent between the Driver Station and the capture is not included.
+     *
+     * @return FPGA time in microseconds of the last capture in which any axis,
+     *         button or the POV changed, 0 before the first change
+     */
+    public long getInputChangedMicros() {
+        return this.inputChangedMicros;
+    }
+
+    /**
+     * @return bitmask of all buttons, bit <code>n - 1</code> set for button
+     *         <code>n</code>
+     */
+    public int getButtons() {
+        return this.snapshot.buttons;
     }
 
     public int getDpad() {
-        return this.controller.getPOV();
+        return this.snapshot.pov;
     }
 
     /**
@@ -129,14 +354,35 @@ public class DTXboxController {
      *        <code>BOTH<code>
      */
     public void startRumble(double duration, double power, RumbleSide side) {
-        long timeout = (long) (1_000 * duration) + System.currentTimeMillis();
+        startRumble(RumblePattern.constant(duration, power), side);
+    }
+
+    /**
+     * Plays a rumble pattern on both sides of the controller
+     *
+     * @param pattern
+     *        Schedule of strengths to play, replacing any current rumble
+     */
+    public void startRumble(RumblePattern pattern) {
+        startRumble(pattern, RumbleSide.BOTH);
+    }
+
+    /**
+     * Plays a rumble pattern on the controller. Safe to call from any thread.
+     *
+     * @param pattern
+     *        Schedule of strengths to play, replacing any current rumble
+     * @param side
+     *        What side the ruble on <code>LEFT<code>, <code>RIGHT<code>,
+     *        <code>BOTH<code>
+     */
+    public void startRumble(RumblePattern pattern, RumbleSide side) {
+        long now = RobotController.getFPGATime();
         if (side.isLeft) {
-            this.leftPower = power;
-            this.leftTimeout = timeout;
+            this.leftRumble.start(pattern, now);
         }
         if (side.isRight) {
-            this.rightPower = power;
-            this.rightTimeout = timeout;
+            this.rightRumble.start(pattern, now);
         }
     }
 
@@ -156,155 +402,155 @@ public class DTXboxController {
      */
     public void stopRumble(RumbleSide side) {
         if (side.isLeft) {
-            this.leftTimeout = Long.MIN_VALUE;
+            this.leftRumble.stop();
         }
         if (side.isRight) {
-            this.rightTimeout = Long.MIN_VALUE;
+            this.rightRumble.stop();
         }
     }
 
     public boolean getAButton() {
-        return this.controller.getAButton();
+        return (this.snapshot.buttons & A_BUTTON) != 0;
     }
 
     public boolean getBButton() {
-        return this.controller.getBButton();
+        return (this.snapshot.buttons & B_BUTTON) != 0;
     }
 
     public boolean getXButton() {
-        return this.controller.getXButton();
+        return (this.snapshot.buttons & X_BUTTON) != 0;
     }
 
     public boolean getYButton() {
-        return this.controller.getYButton();
+        return (this.snapshot.buttons & Y_BUTTON) != 0;
     }
 
     public boolean getStartButton() {
-        return this.controller.getStartButton();
+        return (this.snapshot.buttons & START_BUTTON) != 0;
     }
 
     public boolean getBackButton() {
-        return this.controller.getBackButton();
+        return (this.snapshot.buttons & BACK_BUTTON) != 0;
     }
 
     public boolean getLeftStickButton() {
-        return this.controller.getLeftStickButton();
+        return (this.snapshot.buttons & LEFT_STICK_BUTTON) != 0;
     }
 
     public boolean getRightStickButton() {
-        return this.controller.getRightStickButton();
+        return (this.snapshot.buttons & RIGHT_STICK_BUTTON) != 0;
     }
 
     public boolean getLeftBumper() {
-        return this.controller.getLeftBumper();
+        return (this.snapshot.buttons & LEFT_BUMPER) != 0;
     }
 
     public boolean getRightBumper() {
-        return this.controller.getRightBumper();
+        return (this.snapshot.buttons & RIGHT_BUMPER) != 0;
     }
 
     public boolean getAButtonPressed() {
-        return this.controller.getAButtonPressed();
+        return (this.snapshot.pressed & A_BUTTON) != 0;
     }
 
     public boolean getBButtonPressed() {
-        return this.controller.getBButtonPressed();
+        return (this.snapshot.pressed & B_BUTTON) != 0;
     }
 
     public boolean getXButtonPressed() {
-        return this.controller.getXButtonPressed();
+        return (this.snapshot.pressed & X_BUTTON) != 0;
     }
 
     public boolean getYButtonPressed() {
-        return this.controller.getYButtonPressed();
+        return (this.snapshot.pressed & Y_BUTTON) != 0;
     }
 
     public boolean getStartButtonPressed() {
-        return this.controller.getStartButtonPressed();
+        return (this.snapshot.pressed & START_BUTTON) != 0;
     }
 
     public boolean getBackButtonPressed() {
-        return this.controller.getBackButtonPressed();
+        return (this.snapshot.pressed & BACK_BUTTON) != 0;
     }
 
     public boolean getLeftStickButtonPressed() {
-        return this.controller.getLeftStickButtonPressed();
+        return (this.snapshot.pressed & LEFT_STICK_BUTTON) != 0;
     }
 
     public boolean getRightStickButtonPressed() {
-        return this.controller.getRightStickButtonPressed();
+        return (this.snapshot.pressed & RIGHT_STICK_BUTTON) != 0;
     }
 
     public boolean getLeftBumperPressed() {
-        return this.controller.getLeftBumperPressed();
+        return (this.snapshot.pressed & LEFT_BUMPER) != 0;
     }
 
     public boolean getRightBumperPressed() {
-        return this.controller.getRightBumperPressed();
+        return (this.snapshot.pressed & RIGHT_BUMPER) != 0;
     }
 
     public boolean getAButtonReleased() {
-        return this.controller.getAButtonReleased();
+        return (this.snapshot.released & A_BUTTON) != 0;
     }
 
     public boolean getBButtonReleased() {
-        return this.controller.getBButtonReleased();
+        return (this.snapshot.released & B_BUTTON) != 0;
     }
 
     public boolean getXButtonReleased() {
-        return this.controller.getXButtonReleased();
+        return (this.snapshot.released & X_BUTTON) != 0;
     }
 
     public boolean getYButtonReleased() {
-        return this.controller.getYButtonReleased();
+        return (this.snapshot.released & Y_BUTTON) != 0;
     }
 
     public boolean getStartButtonReleased() {
-        return this.controller.getStartButtonReleased();
+        return (this.snapshot.released & START_BUTTON) != 0;
     }
 
     public boolean getBackButtonReleased() {
-        return this.controller.getBackButtonReleased();
+        return (this.snapshot.released & BACK_BUTTON) != 0;
     }
 
     public boolean getLeftStickButtonReleased() {
-        return this.controller.getLeftStickButtonReleased();
+        return (this.snapshot.released & LEFT_STICK_BUTTON) != 0;
     }
 
     public boolean getRightStickButtonReleased() {
-        return this.controller.getRightStickButtonReleased();
+        return (this.snapshot.released & RIGHT_STICK_BUTTON) != 0;
     }
 
     public boolean getLeftBumperReleased() {
-        return this.controller.getLeftBumperReleased();
+        return (this.snapshot.released & LEFT_BUMPER) != 0;
     }
 
     public boolean getRightBumperReleased() {
-        return this.controller.getRightBumperReleased();
+        return (this.snapshot.released & RIGHT_BUMPER) != 0;
     }
 
     public double getLeftStickX() {
-        return deadBand(this.controller.getLeftX());
+        return deadBand(this.snapshot.leftX);
     }
 
     public double getLeftStickY() {
-        return deadBand(-this.controller.getLeftY());
+        return deadBand(-this.snapshot.leftY);
     }
 
     public double getRightStickX() {
-        return deadBand(this.controller.getRightX());
+        return deadBand(this.snapshot.rightX);
     }
 
     public double getRightStickY() {
-        return deadBand(-this.controller.getRightY());
+        return deadBand(-this.snapshot.rightY);
     }
 
     public double getLeftTrigger() {
-        return deadBand(this.controller.getLeftTriggerAxis());
+        return deadBand(this.snapshot.leftTrigger);
     }
 
     public double getRightTrigger() {
-        return deadBand(this.controller.getRightTriggerAxis());
+        return deadBand(this.snapshot.rightTrigger);
     }
 
     public double getLeftStickXSquared() {
@@ -355,4 +601,8 @@ public class DTXboxController {
     private static double squareKeepSign(double d) {
         return Math.copySign(d * d, d);
     }
+
+    private static int buttonMask(XboxController.Button button) {
+        return 1 << (button.value - 1);
+    }
 }
@@ -0,0 +1,272 @@
+package frc.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Registry of dashboard values under the <code>Telemetry</code> table. Each
+ * value is registered once with a source, a period and a change threshold,
+ * and gets its publisher up front. {@link #publish()} runs every loop and
+ * polls only the values that are due; a value is sent when it moved by more
+ * than its threshold, or when it has not been sent for
+ * {@link #STALE_SECONDS} so a dashboard that connects late still fills in.
+ * Everything due is sent in the same pass, and NetworkTables carries the
+ * pass out in one network update.
+ *
+ * <p>Publish time is profiled as <code>DashboardTelemetry.publish</code>.
+ * Updates, suppressed polls and an estimate of the bytes on the wire are
+ * published under <code>Telemetry/Stats</code> once a second.
+ */
+public final class DashboardTelemetry {
+    public static final double STALE_SECONDS = 1.0;
+
+    private static final double STATS_INTERVAL_SECONDS = 1.0;
+
+    // Approximate NT4 wire size of one value update: message header, topic id, timestamp, type
+    // and the value itself
+    private static final int UPDATE_OVERHEAD_BYTES = 12;
+    private static final int DOUBLE_BYTES          = UPDATE_OVERHEAD_BYTES + 9;
+    private static final int INTEGER_BYTES         = UPDATE_OVERHEAD_BYTES + 9;
+    private static final int BOOLEAN_BYTES         = UPDATE_OVERHEAD_BYTES + 1;
+
+    private abstract static class Channel {
+        private final String key;
+        private final int    updateBytes;
+        private long         periodMicros;
+        private long         nextDueMicros;
+        private long         lastSentMicros = Long.MIN_VALUE / 2;
+
+        private Channel(String key, double periodSeconds, int updateBytes) {
+            this.key = key;
+            this.periodMicros = (long) (periodSeconds * 1e6);
+            this.updateBytes = updateBytes;
+        }
+
+        /**
+         * Reads the source and sends it if it changed enough or
+         * <code>stale</code> is set.
+         *
+         * @return true if a value was sent
+         */
+        abstract boolean poll(boolean stale);
+    }
+
+    private static final class DoubleChannel extends Channel {
+        private final DoublePublisher publisher;
+        private DoubleSupplier        source;
+        private double                threshold;
+        private double                lastSent = Double.NaN;
+
+        private DoubleChannel(String key, double periodSeconds, double threshold, DoubleSupplier source) {
+            super(key, periodSeconds, DOUBLE_BYTES);
+            this.publisher = TABLE.getDoubleTopic(key).publish();
+            this.threshold = threshold;
+            this.source = source;
+        }
+
+        @Override
+        boolean poll(boolean stale) {
+            double value = this.source.getAsDouble();
+            // A first value, or NaN on either side, fails the comparison and is sent
+            if (!stale && Math.abs(value - this.lastSent) <= this.threshold) {
+                return false;
+            }
+            this.publisher.set(value);
+            this.lastSent = value;
+            return true;
+        }
+    }
+
+    private static final class IntegerChannel extends Channel {
+        private final IntegerPublisher publisher;
+        private LongSupplier           source;
+        private long                   lastSent;
+        private boolean                sent;
+
+        private IntegerChannel(String key, double periodSeconds, LongSupplier source) {
+            super(key, periodSeconds, INTEGER_BYTES);
+            this.publisher = TABLE.getIntegerTopic(key).publish();
+            this.source = source;
+        }
+
+        @Override
+        boolean poll(boolean stale) {
+            long value = this.source.getAsLong();
+            if (!stale && this.sent && value == this.lastSent) {
+                return false;
+            }
+            this.publisher.set(value);
+            this.lastSent = value;
+            this.sent = true;
+            return true;
+        }
+    }
+
+    private static final class BooleanChannel extends Channel {
+        private final BooleanPublisher publisher;
+        private BooleanSupplier        source;
+        private boolean                lastSent;
+        private boolean                sent;
+
+        private BooleanChannel(String key, double periodSeconds, BooleanSupplier source) {
+            super(key, periodSeconds, BOOLEAN_BYTES);
+            this.publisher = TABLE.getBooleanTopic(key).publish();
+            this.source = source;
+        }
+
+        @Override
+        boolean poll(boolean stale) {
+            boolean value = this.source.getAsBoolean();
+            if (!stale && this.sent && value == this.lastSent) {
+                return false;
+            }
+            this.publisher.set(value);
+            this.lastSent = value;
+            this.sent = true;
+            return true;
+        }
+    }
+
+    private static final NetworkTable    TABLE    = NetworkTableInstance.getDefault().getTable("Telemetry");
+    private static final List<Channel>   CHANNELS = new ArrayList<>();
+    private static final ProfiledSection PROFILE  = LoopProfiler.section("DashboardTelemetry.publish");
+
+    private static final DoublePublisher UPDATES_PUBLISHER;
+    private static final DoublePublisher SUPPRESSED_PUBLISHER;
+    private static final DoublePublisher BYTES_PUBLISHER;
+    private static final DoublePublisher CHANNELS_PUBLISHER;
+
+    static {
+        NetworkTable stats = TABLE.getSubTable("Stats");
+        UPDATES_PUBLISHER = stats.getDoubleTopic("Updates per s").publish();
+        SUPPRESSED_PUBLISHER = stats.getDoubleTopic("Suppressed per s").publish();
+        BYTES_PUBLISHER = stats.getDoubleTopic("Estimated bytes per s").publish();
+        CHANNELS_PUBLISHER = stats.getDoubleTopic("Channels").publish();
+    }
+
+    private static long statsStartMicros;
+    private static int  updates;
+    private static int  suppressed;
+    private static long bytes;
+
+    private DashboardTelemetry() {}
+
+    /**
+     * Registers a number. Registering a key again replaces its source, period
+     * and threshold.
+     *
+     * @param key
+     *        Name under the <code>Telemetry</code> table, with
+     *        <code>/</code> for subtables
+     * @param periodSeconds
+     *        How often the source is polled, 0 for every loop
+     * @param threshold
+     *        Smallest change that is sent before the value goes stale
+     */
+    public static synchronized void addDouble(String key, double periodSeconds, double threshold,
+            DoubleSupplier source) {
+        Channel existing = find(key);
+        if (existing instanceof DoubleChannel) {
+            DoubleChannel channel = (DoubleChannel) existing;
+            channel.periodMicros = (long) (periodSeconds * 1e6);
+            channel.threshold = threshold;
+            channel.source = source;
+            return;
+        }
+        CHANNELS.add(new DoubleChannel(key, periodSeconds, threshold, source));
+    }
+
+    /**
+     * Registers a whole number, sent on any change, such as a button mask.
+     *
+     * @see #addDouble(String, double, double, DoubleSupplier)
+     */
+    public static synchronized void addInteger(String key, double periodSeconds, LongSupplier source) {
+        Channel existing = find(key);
+        if (existing instanceof IntegerChannel) {
+            IntegerChannel channel = (IntegerChannel) existing;
+            channel.periodMicros = (long) (periodSeconds * 1e6);
+            channel.source = source;
+            return;
+        }
+        CHANNELS.add(new IntegerChannel(key, periodSeconds, source));
+    }
+
+    /**
+     * Registers a flag, sent on any change.
+     *
+     * @see #addDouble(String, double, double, DoubleSupplier)
+     */
+    public static synchronized void addBoolean(String key, double periodSeconds, BooleanSupplier source) {
+        Channel existing = find(key);
+        if (existing instanceof BooleanChannel) {
+            BooleanChannel channel = (BooleanChannel) existing;
+            channel.periodMicros = (long) (periodSeconds * 1e6);
+            channel.source = source;
+            return;
+        }
+        CHANNELS.add(new BooleanChannel(key, periodSeconds, source));
+    }
+
+    /**
+     * Call once per loop from the robot thread, after the scheduler so the
+     * values are this loop's.
+     */
+    public static void publish() {
+        long start = PROFILE.start();
+        long now = RobotController.getFPGATime();
+        long staleMicros = (long) (STALE_SECONDS * 1e6);
+        for (int i = 0; i < CHANNELS.size(); i++) {
+            Channel channel = CHANNELS.get(i);
+            if (now < channel.nextDueMicros) {
+                continue;
+            }
+            // Keep to the period on average rather than slipping by the loop's jitter
+            channel.nextDueMicros += channel.periodMicros;
+            if (channel.nextDueMicros <= now) {
+                channel.nextDueMicros = now + channel.periodMicros;
+            }
+            if (channel.poll(now - channel.lastSentMicros >= staleMicros)) {
+                channel.lastSentMicros = now;
+                updates++;
+                bytes += channel.updateBytes;
+            } else {
+                suppressed++;
+            }
+        }
+
+        long elapsed = now - statsStartMicros;
+        if (elapsed >= STATS_INTERVAL_SECONDS * 1e6) {
+            if (statsStartMicros != 0) {
+                UPDATES_PUBLISHER.set(updates * 1e6 / elapsed);
+                SUPPRESSED_PUBLISHER.set(suppressed * 1e6 / elapsed);
+                BYTES_PUBLISHER.set(bytes * 1e6 / elapsed);
+                CHANNELS_PUBLISHER.set(CHANNELS.size());
+            }
+            statsStartMicros = now;
+            updates = 0;
+            suppressed = 0;
+            bytes = 0;
+        }
+        PROFILE.stop(start);
+    }
+
+    private static Channel find(String key) {
+        for (Channel channel : CHANNELS) {
+            if (channel.key.equals(key)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
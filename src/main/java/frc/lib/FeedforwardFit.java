@@ -0,0 +1,191 @@
+package frc.lib;
+
+/**
+ * Least squares fit of a motor driven mechanism's feedforward,
+ * <code>V = kS sgn(v) + kV v + kA a</code>, from voltage and velocity logged
+ * while it is driven through voltage ramps and steps. Samples go into arrays
+ * allocated up front, so logging from the robot loop does not allocate; the
+ * fit runs once, at the end.
+ *
+ * <p>Acceleration is not measured but taken as the central difference of
+ * velocity. Samples are grouped into runs, one per ramp or step, and a
+ * difference never spans two runs. Samples slower than the minimum velocity
+ * are left out of the fit, since the direction the static friction acts in is
+ * unknown at a standstill.
+ */
+public final class FeedforwardFit {
+    private final double[] times;
+    private final double[] volts;
+    private final double[] velocities;
+    private final int[]    runs;
+    private final double   minVelocity;
+
+    private int count;
+    private int run;
+
+    /**
+     * @param capacity
+     *        Most samples that will be logged across all runs
+     * @param minVelocity
+     *        Slowest sample that is fitted, in the velocity's units
+     */
+    public FeedforwardFit(int capacity, double minVelocity) {
+        this.times = new double[capacity];
+        this.volts = new double[capacity];
+        this.velocities = new double[capacity];
+        this.runs = new int[capacity];
+        this.minVelocity = minVelocity;
+    }
+
+    /**
+     * Starts a new run. Call before the first sample of each ramp or step.
+     */
+    public void startRun() {
+        this.run++;
+    }
+
+    /**
+     * @return false once the buffers are full, when the sample is dropped
+     */
+    public boolean add(double timeSeconds, double voltage, double velocity) {
+        if (this.count == this.times.length) {
+            return false;
+        }
+        this.times[this.count] = timeSeconds;
+        this.volts[this.count] = voltage;
+        this.velocities[this.count] = velocity;
+        this.runs[this.count] = this.run;
+        this.count++;
+        return true;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public void clear() {
+        this.count = 0;
+        this.run = 0;
+    }
+
+    /**
+     * Solves the normal equations of the logged samples.
+     *
+     * @return the gains, or null when the samples do not determine all three,
+     *         as when no run accelerated hard enough to separate kA from kV
+     */
+    public Result fit() {
+        // Normal equations X'X b = X'y over the rows x = (sgn v, v, a), y = V
+        double[][] normal = new double[3][4];
+        double sumY = 0;
+        double sumYY = 0;
+        int used = 0;
+        for (int i = 1; i < this.count - 1; i++) {
+            double velocity = this.velocities[i];
+            double dt = this.times[i + 1] - this.times[i - 1];
+            if (this.runs[i - 1] != this.runs[i] || this.runs[i + 1] != this.runs[i]
+                    || Math.abs(velocity) < this.minVelocity || dt <= 0) {
+                continue;
+            }
+            double acceleration = (this.velocities[i + 1] - this.velocities[i - 1]) / dt;
+            double y = this.volts[i];
+            double x0 = Math.signum(velocity);
+            double x1 = velocity;
+            double x2 = acceleration;
+            accumulate(normal[0], x0, x0, x1, x2, y);
+            accumulate(normal[1], x1, x0, x1, x2, y);
+            accumulate(normal[2], x2, x0, x1, x2, y);
+            sumY += y;
+            sumYY += y * y;
+            used++;
+        }
+        if (used < 3) {
+            return null;
+        }
+        double yty = sumYY;
+        double xty0 = normal[0][3];
+        double xty1 = normal[1][3];
+        double xty2 = normal[2][3];
+        if (!solve(normal)) {
+            return null;
+        }
+        double ks = normal[0][3];
+        double kv = normal[1][3];
+        double ka = normal[2][3];
+
+        // At the least squares solution the residual sum of squares is y'y - b'X'y
+        double residual = yty - (ks * xty0 + kv * xty1 + ka * xty2);
+        double total = sumYY - sumY * sumY / used;
+        double rSquared = total > 0 ? 1 - residual / total : 0;
+        return new Result(ks, kv, ka, rSquared, used);
+    }
+
+    private static void accumulate(double[] row, double xi, double x0, double x1, double x2, double y) {
+        row[0] += xi * x0;
+        row[1] += xi * x1;
+        row[2] += xi * x2;
+        row[3] += xi * y;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting on an augmented 3x4 matrix,
+     * leaving the solution in the last column.
+     *
+     * @return false if the matrix is singular
+     */
+    private static boolean solve(double[][] m) {
+        double scale = 0;
+        for (double[] row : m) {
+            for (int j = 0; j < 3; j++) {
+                scale = Math.max(scale, Math.abs(row[j]));
+            }
+        }
+        for (int col = 0; col < 3; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < 3; row++) {
+                if (Math.abs(m[row][col]) > Math.abs(m[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(m[pivot][col]) <= scale * 1e-12) {
+                return false;
+            }
+            double[] swap = m[col];
+            m[col] = m[pivot];
+            m[pivot] = swap;
+            for (int row = 0; row < 3; row++) {
+                if (row == col) {
+                    continue;
+                }
+                double factor = m[row][col] / m[col][col];
+                for (int j = col; j < 4; j++) {
+                    m[row][j] -= factor * m[col][j];
+                }
+            }
+        }
+        for (int row = 0; row < 3; row++) {
+            m[row][3] /= m[row][row];
+        }
+        return true;
+    }
+
+    /**
+     * Fitted gains, in volts per the velocity and acceleration units logged.
+     */
+    public static final class Result {
+        public final double ks;
+        public final double kv;
+        public final double ka;
+        /** Fraction of the voltage variance the model explains */
+        public final double rSquared;
+        public final int    samples;
+
+        private Result(double ks, double kv, double ka, double rSquared, int samples) {
+            this.ks = ks;
+            this.kv = kv;
+            this.ka = ka;
+            this.rSquared = rSquared;
+            this.samples = samples;
+        }
+    }
+}
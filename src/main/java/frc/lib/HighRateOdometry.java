@@ -0,0 +1,211 @@
+package frc.lib;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Differential drive odometry sampled on its own notifier thread, faster than
+ * the robot loop. Heading comes from the gyro when it reads a number and from
+ * the wheel difference otherwise. Each sample goes out through a
+ * {@link PoseBuffer}, so any thread can read a consistent pose without
+ * blocking the sampler.
+ *
+ * <p>The sampler integrates in its own frame and never resets. A pose reset
+ * instead swaps in a new origin that maps that frame onto the field, which
+ * takes effect for readers immediately rather than on the next sample.
+ */
+public class HighRateOdometry implements AutoCloseable {
+    private static final double STATS_INTERVAL_SECONDS = 1.0;
+    private static final int    RESET_READ_ATTEMPTS    = 10;
+    private static final double RESET_RETRY_SECONDS    = 0.001;
+
+    /**
+     * Where the sampler's frame sits on the field, as of the last reset.
+     */
+    private static final class Origin {
+        private final double rawX;
+        private final double rawY;
+        private final double rawHeading;
+        private final double rawEncoderHeading;
+        private final double x;
+        private final double y;
+        private final double heading;
+
+        private Origin(PoseBuffer.Sample raw, double x, double y, double heading) {
+            this.rawX = raw.x;
+            this.rawY = raw.y;
+            this.rawHeading = raw.heading;
+            this.rawEncoderHeading = raw.encoderHeading;
+            this.x = x;
+            this.y = y;
+            this.heading = heading;
+        }
+    }
+
+    private final double          trackWidthMeters;
+    private final DoubleSupplier  leftMeters;
+    private final DoubleSupplier  rightMeters;
+    private final DoubleSupplier  leftVelocity;
+    private final DoubleSupplier  rightVelocity;
+    private final DoubleSupplier  gyroHeading;
+    private final PoseBuffer      buffer = new PoseBuffer();
+    private final Notifier        notifier;
+    private final DoublePublisher ratePublisher;
+    private final DoublePublisher maxPeriodPublisher;
+    private final AtomicReference<Origin> origin =
+            new AtomicReference<>(new Origin(new PoseBuffer.Sample(), 0, 0, 0));
+
+    private volatile ThreadPlacement placement = ThreadPlacement.DEFAULT;
+
+    // Owned by the sampler thread
+    private boolean started;
+    private double  lastLeft;
+    private double  lastRight;
+    private double  x;
+    private double  y;
+    private double  heading;
+    private double  encoderHeading;
+    private long    lastMicros;
+    private long    statsStartMicros;
+    private long    maxPeriodMicros;
+    private int     samplesSinceStats;
+
+    /**
+     * @param name
+     *        Table the sampler's rate is published under
+     * @param trackWidthMeters
+     *        Effective distance between the left and right wheels
+     * @param gyroHeading
+     *        Heading in radians, counterclockwise positive, or NaN when the
+     *        gyro is not available
+     */
+    public HighRateOdometry(String name, double trackWidthMeters, DoubleSupplier leftMeters,
+            DoubleSupplier rightMeters, DoubleSupplier leftVelocity, DoubleSupplier rightVelocity,
+            DoubleSupplier gyroHeading) {
+        this.trackWidthMeters = trackWidthMeters;
+        this.leftMeters = leftMeters;
+        this.rightMeters = rightMeters;
+        this.leftVelocity = leftVelocity;
+        this.rightVelocity = rightVelocity;
+        this.gyroHeading = gyroHeading;
+        this.notifier = new Notifier(this::sample);
+        this.notifier.setName(name);
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(name);
+        this.ratePublisher = table.getDoubleTopic("Rate Hz").publish();
+        this.maxPeriodPublisher = table.getDoubleTopic("Max period ms").publish();
+    }
+
+    public void start(double periodSeconds) {
+        start(periodSeconds, ThreadPlacement.DEFAULT);
+    }
+
+    /**
+     * @param placement
+     *        CPU and priority for the sampler thread, applied on its first
+     *        sample
+     */
+    public void start(double periodSeconds, ThreadPlacement placement) {
+        this.placement = placement;
+        this.notifier.startPeriodic(periodSeconds);
+    }
+
+    /**
+     * Copies the latest pose, on the field, into <code>out</code>. Safe from
+     * any thread.
+     *
+     * @return false if there is no sample yet, or the sampler was mid-write
+     *         for every attempt; <code>out</code> then keeps the last pose
+     *         read into it
+     */
+    public boolean getPose(PoseBuffer.Sample out) {
+        if (!this.buffer.read(out)) {
+            return false;
+        }
+        Origin o = this.origin.get();
+        double rotation = o.heading - o.rawHeading;
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        double dx = out.x - o.rawX;
+        double dy = out.y - o.rawY;
+        out.x = o.x + cos * dx - sin * dy;
+        out.y = o.y + sin * dx + cos * dy;
+        out.heading += rotation;
+        out.encoderHeading += o.heading - o.rawEncoderHeading;
+        return true;
+    }
+
+    /**
+     * Moves the field origin so the robot is at the given pose now. Allocates,
+     * and may sleep for a millisecond or two, so call it on mode changes
+     * rather than every loop.
+     */
+    public void resetPose(double x, double y, double heading) {
+        PoseBuffer.Sample raw = new PoseBuffer.Sample();
+        // Sleeping rather than spinning lets a sampler this thread preempted finish its write
+        for (int i = 0; i < RESET_READ_ATTEMPTS && !this.buffer.read(raw); i++) {
+            Timer.delay(RESET_RETRY_SECONDS);
+        }
+        this.origin.set(new Origin(raw, x, y, heading));
+    }
+
+    @Override
+    public void close() {
+        this.notifier.close();
+    }
+
+    private void sample() {
+        if (!this.started) {
+            this.placement.applyToCurrentThread("Odometry");
+        }
+        long now = RobotController.getFPGATime();
+        double left = this.leftMeters.getAsDouble();
+        double right = this.rightMeters.getAsDouble();
+        double gyro = this.gyroHeading.getAsDouble();
+        if (!this.started) {
+            this.started = true;
+            this.lastLeft = left;
+            this.lastRight = right;
+            this.heading = Double.isNaN(gyro) ? 0 : gyro;
+            this.encoderHeading = this.heading;
+            this.lastMicros = now;
+            this.statsStartMicros = now;
+        }
+
+        double deltaLeft = left - this.lastLeft;
+        double deltaRight = right - this.lastRight;
+        this.lastLeft = left;
+        this.lastRight = right;
+        double encoderDelta = (deltaRight - deltaLeft) / this.trackWidthMeters;
+        this.encoderHeading += encoderDelta;
+
+        // Integrate along the arc's mean heading
+        double newHeading = Double.isNaN(gyro) ? this.heading + encoderDelta : gyro;
+        double midHeading = (this.heading + newHeading) / 2;
+        double distance = (deltaLeft + deltaRight) / 2;
+        this.x += distance * Math.cos(midHeading);
+        this.y += distance * Math.sin(midHeading);
+        this.heading = newHeading;
+
+        this.buffer.write(now, this.x, this.y, this.heading, this.encoderHeading,
+                this.leftVelocity.getAsDouble(), this.rightVelocity.getAsDouble());
+
+        this.maxPeriodMicros = Math.max(this.maxPeriodMicros, now - this.lastMicros);
+        this.lastMicros = now;
+        this.samplesSinceStats++;
+        long elapsed = now - this.statsStartMicros;
+        if (elapsed >= STATS_INTERVAL_SECONDS * 1e6) {
+            this.ratePublisher.set(this.samplesSinceStats * 1e6 / elapsed);
+            this.maxPeriodPublisher.set(this.maxPeriodMicros / 1e3);
+            this.statsStartMicros = now;
+            this.maxPeriodMicros = 0;
+            this.samplesSinceStats = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package frc.lib;
+
+/**
+ * Input-to-actuation latency for one mechanism. Motor outputs report each
+ * write that changed the setpoint along with the acquisition timestamp of the
+ * input that caused it; the first write for each input is recorded, in the
+ * <code>Latency.&lt;mechanism&gt;</code> section of the {@link LoopProfiler},
+ * which publishes its percentiles. Later writes from the same input, such as
+ * heartbeats or the other side of a drivetrain, are ignored. Two compares
+ * and a histogram increment per write, so it stays on in matches.
+ */
+public final class LatencyTrace {
+    private final ProfiledSection section;
+    private long                  lastInputMicros;
+
+    public LatencyTrace(String mechanism) {
+        this.section = LoopProfiler.section("Latency." + mechanism);
+    }
+
+    /**
+     * @param inputMicros
+     *        FPGA time the input was acquired, 0 for writes not caused by an
+     *        input
+     * @param nowMicros
+     *        FPGA time of the write
+     */
+    public void actuated(long inputMicros, long nowMicros) {
+        if (inputMicros == 0 || inputMicros == this.lastInputMicros) {
+            return;
+        }
+        this.lastInputMicros = inputMicros;
+        this.section.record((nowMicros - inputMicros) * 1_000);
+    }
+}
@@ -0,0 +1,133 @@
+package frc.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Registry of {@link ProfiledSection}s. Sections and their NetworkTables
+ * publishers are created up front; {@link #publish()} runs every loop but only
+ * computes and sends p50/p99/max once per publish interval.
+ */
+public final class LoopProfiler {
+    private static final int PUBLISH_INTERVAL_LOOPS = 50;
+    private static final int CALIBRATION_ROUNDS     = 20_000;
+
+    private static final class Entry {
+        private final ProfiledSection section;
+        private final DoublePublisher p50;
+        private final DoublePublisher p99;
+        private final DoublePublisher max;
+        private final DoublePublisher overruns;
+
+        private Entry(ProfiledSection section, NetworkTable table) {
+            this.section = section;
+            this.p50 = table.getDoubleTopic("p50 ms").publish();
+            this.p99 = table.getDoubleTopic("p99 ms").publish();
+            this.max = table.getDoubleTopic("max ms").publish();
+            this.overruns = table.getDoubleTopic("overruns").publish();
+        }
+    }
+
+    private static final List<Entry> ENTRIES = new ArrayList<>();
+    private static final NetworkTable TABLE = NetworkTableInstance.getDefault().getTable("Profiler");
+
+    private static int loopsSincePublish;
+
+    private LoopProfiler() {}
+
+    /**
+     * Gets or creates a section with no overrun budget
+     */
+    public static ProfiledSection section(String name) {
+        return section(name, 0D);
+    }
+
+    /**
+     * Gets or creates a section
+     *
+     * @param name
+     *        Name shown under the <code>Profiler</code> table
+     * @param budgetSeconds
+     *        Samples longer than this count as overruns, 0 to disable
+     */
+    public static synchronized ProfiledSection section(String name, double budgetSeconds) {
+        for (Entry entry : ENTRIES) {
+            if (entry.section.getName().equals(name)) {
+                return entry.section;
+            }
+        }
+        ProfiledSection section = new ProfiledSection(name, (long) (budgetSeconds * 1e9));
+        ENTRIES.add(new Entry(section, TABLE.getSubTable(name)));
+        return section;
+    }
+
+    /**
+     * Starts counting the bytes each section allocates on its thread. For the
+     * allocation test in simulation; the counter costs two JNI calls per
+     * section, so leave it off on the robot. Call before the robot thread
+     * starts.
+     */
+    public static void trackAllocations(AllocationCounter counter) {
+        ProfiledSection.allocationCounter = counter;
+        ProfiledSection.allocationOverhead = calibrate(counter);
+        ProfiledSection.trackAllocations = true;
+    }
+
+    /**
+     * Zeroes every section's allocation count, to discard warm-up.
+     */
+    public static synchronized void resetAllocations() {
+        ProfiledSection.allocationOverhead = calibrate(ProfiledSection.allocationCounter);
+        for (Entry entry : ENTRIES) {
+            entry.section.resetAllocations();
+        }
+    }
+
+    /**
+     * @return every section created so far, in creation order
+     */
+    public static synchronized List<ProfiledSection> getSections() {
+        List<ProfiledSection> sections = new ArrayList<>();
+        for (Entry entry : ENTRIES) {
+            sections.add(entry.section);
+        }
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * @return bytes the counter itself allocates between two back to back
+     *         reads, once JIT compiled, to subtract from every measurement
+     */
+    private static long calibrate(AllocationCounter counter) {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long before = counter.threadAllocatedBytes();
+            overhead = Math.min(overhead, counter.threadAllocatedBytes() - before);
+        }
+        return overhead;
+    }
+
+    /**
+     * Call once per loop from the robot thread.
+     */
+    public static void publish() {
+        if (++loopsSincePublish < PUBLISH_INTERVAL_LOOPS) {
+            return;
+        }
+        loopsSincePublish = 0;
+        for (int i = 0; i < ENTRIES.size(); i++) {
+            Entry entry = ENTRIES.get(i);
+            ProfiledSection section = entry.section;
+            entry.p50.set(section.getPercentileMicros(0.5) / 1_000D);
+            entry.p99.set(section.getPercentileMicros(0.99) / 1_000D);
+            entry.max.set(section.getMaxMicros() / 1_000D);
+            entry.overruns.set(section.getOverruns());
+            section.resetWindow();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package frc.lib;
+
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Winding temperature of a brushed motor, estimated from its Talon's current,
+ * and the output scale that keeps it below a limit. The motor is one thermal
+ * mass: copper loss <code>I^2 R</code> from the stator current heats it, and
+ * it sheds heat to the air through a fixed thermal resistance.
+ *
+ * <p>Each update works out the most current the motor can carry for the next
+ * horizon without passing its limit, which is generous when it is cold and
+ * settles to the continuous rating once it is hot. A motor drawing more gets
+ * an output scale below one. As with {@link PowerGovernor}, the scale drops
+ * immediately and recovers at a limited rate, so a mechanism held at full
+ * output runs at the highest duty it can sustain instead of fading. A motor
+ * at its limit has no current to spare, and its scale goes all the way to
+ * zero until it cools.
+ *
+ * <p>The model starts at ambient. After a code restart in a hot session it
+ * reads low until the real motor has cooled to match.
+ */
+public class MotorThermalModel {
+    private static final double AMBIENT_CELSIUS      = 25;
+    private static final double RECOVERY_PER_SECOND  = 0.1;
+    // Duty below which supply current says too little about stator current to be used
+    private static final double MIN_DUTY             = 0.05;
+    private static final double MAX_HEADROOM_SECONDS = 600;
+    private static final double TELEMETRY_PERIOD     = 0.1;
+
+    private final WPI_TalonSRX talon;
+    private final double       windingOhms;
+    private final double       thermalResistance;
+    private final double       thermalCapacitance;
+    private final double       maxCelsius;
+    // Fraction of the gap to steady state that is left after the horizon
+    private final double       horizonDecay;
+
+    private double temperature = AMBIENT_CELSIUS;
+    private double statorAmps;
+    private double allowedAmps;
+    private double headroomSeconds = MAX_HEADROOM_SECONDS;
+    private double scale = 1;
+    private long   lastMicros;
+
+    /**
+     * @param name
+     *        Table under <code>Telemetry/Thermal</code> the estimate is
+     *        published to
+     * @param windingOhms
+     *        Winding resistance, from <code>DCMotor.rOhms</code>
+     * @param thermalResistance
+     *        Temperature rise per watt dissipated, in steady state, in °C/W
+     * @param thermalCapacitance
+     *        Energy to raise the motor one degree, in J/°C
+     * @param maxCelsius
+     *        Winding temperature never to pass
+     * @param horizonSeconds
+     *        How far ahead the current limit looks; longer is more
+     *        conservative, and infinite is the continuous rating
+     */
+    public MotorThermalModel(String name, WPI_TalonSRX talon, double windingOhms, double thermalResistance,
+            double thermalCapacitance, double maxCelsius, double horizonSeconds) {
+        this.talon = talon;
+        this.windingOhms = windingOhms;
+        this.thermalResistance = thermalResistance;
+        this.thermalCapacitance = thermalCapacitance;
+        this.maxCelsius = maxCelsius;
+        this.horizonDecay = Math.exp(-horizonSeconds / (thermalResistance * thermalCapacitance));
+
+        String table = "Thermal/" + name + "/";
+        DashboardTelemetry.addDouble(table + "Temperature C", TELEMETRY_PERIOD, 0.5, this::getTemperature);
+        DashboardTelemetry.addDouble(table + "Stator A", TELEMETRY_PERIOD, 1, this::getStatorAmps);
+        DashboardTelemetry.addDouble(table + "Allowed A", TELEMETRY_PERIOD, 1, this::getAllowedAmps);
+        DashboardTelemetry.addDouble(table + "Headroom s", TELEMETRY_PERIOD, 1, this::getHeadroomSeconds);
+        DashboardTelemetry.addDouble(table + "Scale", TELEMETRY_PERIOD, 0.01, this::getScale);
+    }
+
+    /**
+     * Call once per loop, before the output is written.
+     */
+    public void update() {
+        long now = RobotController.getFPGATime();
+        double dt = this.lastMicros == 0 ? 0 : (now - this.lastMicros) * 1e-6;
+        this.lastMicros = now;
+
+        // Stator current is the winding current. Where the Talon does not report it, infer it
+        // from supply current, which is stator current times duty.
+        double stator = Math.abs(this.talon.getStatorCurrent());
+        double supply = Math.abs(this.talon.getSupplyCurrent());
+        double duty = Math.abs(this.talon.getMotorOutputPercent());
+        if (stator == 0 && supply > 0) {
+            stator = supply / Math.max(duty, MIN_DUTY);
+        }
+        this.statorAmps = stator;
+
+        double heat = stator * stator * this.windingOhms;
+        double shed = (this.temperature - AMBIENT_CELSIUS) / this.thermalResistance;
+        this.temperature += dt * (heat - shed) / this.thermalCapacitance;
+
+        // Hottest steady state that still stays under the limit over the horizon, from where
+        // the temperature is now, and the current that would head there
+        double steadyLimit = (this.maxCelsius - this.temperature * this.horizonDecay) / (1 - this.horizonDecay);
+        double allowedHeat = Math.max(0, (steadyLimit - AMBIENT_CELSIUS) / this.thermalResistance);
+        this.allowedAmps = Math.sqrt(allowedHeat / this.windingOhms);
+
+        // Time to the limit at the present draw
+        double steady = AMBIENT_CELSIUS + heat * this.thermalResistance;
+        if (steady <= this.maxCelsius) {
+            this.headroomSeconds = MAX_HEADROOM_SECONDS;
+        } else if (this.temperature >= this.maxCelsius) {
+            this.headroomSeconds = 0;
+        } else {
+            double tau = this.thermalResistance * this.thermalCapacitance;
+            this.headroomSeconds = Math.min(MAX_HEADROOM_SECONDS,
+                    -tau * Math.log((this.maxCelsius - steady) / (this.temperature - steady)));
+        }
+
+        // What the motor would draw if it were not being held back. Held off entirely it draws
+        // nothing to go by, so it comes back at the recovery rate once there is headroom again.
+        double demand = this.scale > 0 ? stator / this.scale : 0;
+        double target;
+        if (this.allowedAmps <= 0) {
+            target = 0;
+        } else {
+            target = demand > this.allowedAmps ? this.allowedAmps / demand : 1;
+        }
+        if (target < this.scale) {
+            this.scale = target;
+        } else {
+            this.scale = Math.min(target, this.scale + RECOVERY_PER_SECOND * dt);
+        }
+    }
+
+    /**
+     * @return output multiplier from the last update, 1 when the motor has
+     *         headroom
+     */
+    public double getScale() {
+        return this.scale;
+    }
+
+    /**
+     * @return estimated winding temperature in °C
+     */
+    public double getTemperature() {
+        return this.temperature;
+    }
+
+    public double getStatorAmps() {
+        return this.statorAmps;
+    }
+
+    /**
+     * @return most current the motor can carry over the horizon without
+     *         passing its limit
+     */
+    public double getAllowedAmps() {
+        return this.allowedAmps;
+    }
+
+    /**
+     * @return seconds until the limit at the present current, capped at ten
+     *         minutes
+     */
+    public double getHeadroomSeconds() {
+        return this.headroomSeconds;
+    }
+
+    public double getMaxTemperature() {
+        return this.maxCelsius;
+    }
+}
@@ -0,0 +1,114 @@
+package frc.lib;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The latest odometry sample, handed from one writer thread to any number of
+ * readers without locks. A sequence lock: the writer makes the sequence odd,
+ * writes the fields and makes it even again; a reader copies the fields
+ * between two reads of the sequence and retries if it changed. The writer
+ * never waits, and readers only retry when they overlap a write, which takes
+ * nanoseconds. Neither side allocates.
+ *
+ * <p>A reader that preempted the writer mid-write, on the same CPU at a higher
+ * priority, would never see the write finish, so readers give up after a
+ * bounded number of attempts and keep the sample they already hold.
+ */
+public final class PoseBuffer {
+    // Each attempt takes tens of nanoseconds; a write that lasts longer than all of them has been preempted
+    private static final int MAX_READ_ATTEMPTS = 100;
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(PoseBuffer.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * A copy of one sample. Distances in meters, angles in radians
+     * counterclockwise positive, speeds in meters per second.
+     */
+    public static final class Sample {
+        public long   timestampMicros;
+        public double x;
+        public double y;
+        public double heading;
+        // Heading from the wheels alone, to compare against the gyro
+        public double encoderHeading;
+        public double leftVelocity;
+        public double rightVelocity;
+    }
+
+    @SuppressWarnings("unused") // Accessed through SEQUENCE
+    private long sequence;
+
+    private long   timestampMicros;
+    private double x;
+    private double y;
+    private double heading;
+    private double encoderHeading;
+    private double leftVelocity;
+    private double rightVelocity;
+
+    /**
+     * Publishes a sample. Only ever call from one thread.
+     */
+    public void write(long timestampMicros, double x, double y, double heading, double encoderHeading,
+            double leftVelocity, double rightVelocity) {
+        long current = (long) SEQUENCE.getOpaque(this);
+        SEQUENCE.setOpaque(this, current + 1);
+        VarHandle.storeStoreFence();
+        this.timestampMicros = timestampMicros;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.encoderHeading = encoderHeading;
+        this.leftVelocity = leftVelocity;
+        this.rightVelocity = rightVelocity;
+        SEQUENCE.setRelease(this, current + 2);
+    }
+
+    /**
+     * Copies the latest sample into <code>out</code>, or leaves it untouched,
+     * still holding the last good sample read into it, if there is none yet
+     * or every attempt overlapped a write.
+     *
+     * @return true if <code>out</code> was updated
+     */
+    public boolean read(Sample out) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long before = (long) SEQUENCE.getAcquire(this);
+            if (before == 0) {
+                return false;
+            }
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long timestampMicros = this.timestampMicros;
+            double x = this.x;
+            double y = this.y;
+            double heading = this.heading;
+            double encoderHeading = this.encoderHeading;
+            double leftVelocity = this.leftVelocity;
+            double rightVelocity = this.rightVelocity;
+            VarHandle.loadLoadFence();
+            if ((long) SEQUENCE.getOpaque(this) == before) {
+                out.timestampMicros = timestampMicros;
+                out.x = x;
+                out.y = y;
+                out.heading = heading;
+                out.encoderHeading = encoderHeading;
+                out.leftVelocity = leftVelocity;
+                out.rightVelocity = rightVelocity;
+                return true;
+            }
+        }
+        return false;
+    }
+}
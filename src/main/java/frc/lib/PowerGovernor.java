@@ -0,0 +1,199 @@
+package frc.lib;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Shares the current the battery can supply, without sagging below a floor
+ * voltage, between mechanisms in priority order. Each loop it estimates the
+ * battery's open-circuit voltage and internal resistance from the measured
+ * voltage and currents. That gives the total current available at the floor.
+ * Whatever the robot draws beyond the governed mechanisms, from the
+ * compressor, roboRIO and other unmonitored loads, cannot be held back, so it
+ * comes off the top. The rest is handed out up to each mechanism's budget,
+ * most important first. A mechanism asking for more than its share gets an
+ * output scale below one. Scales drop immediately and recover at a limited
+ * rate, so the robot settles at the highest output it can sustain instead of
+ * browning out.
+ *
+ * <p>Scales, currents and the battery estimate are published under
+ * <code>Telemetry/PowerGovernor</code>.
+ */
+public class PowerGovernor {
+    private static final int    MAX_MECHANISMS        = 8;
+    private static final double MIN_RESISTANCE_OHMS   = 0.005;
+    private static final double MAX_RESISTANCE_OHMS   = 0.1;
+    // Smallest change in current that gives a usable resistance sample
+    private static final double RESISTANCE_STEP_AMPS  = 10;
+    private static final double RESISTANCE_FILTER     = 0.1;
+    private static final double TELEMETRY_PERIOD      = 0.1;
+
+    /**
+     * One governed output. Read {@link #getScale()} and multiply it into the
+     * output before writing the motors.
+     */
+    public static final class Mechanism {
+        private final String          name;
+        private final int             priority;
+        private final double          budgetAmps;
+        private final DoubleSupplier  current;
+
+        private double scale = 1;
+        private double measuredAmps;
+
+        private Mechanism(String name, int priority, double budgetAmps, DoubleSupplier current) {
+            this.name = name;
+            this.priority = priority;
+            this.budgetAmps = budgetAmps;
+            this.current = current;
+            String table = "PowerGovernor/" + name + "/";
+            DashboardTelemetry.addDouble(table + "Scale", TELEMETRY_PERIOD, 0.01, this::getScale);
+            DashboardTelemetry.addDouble(table + "Current A", TELEMETRY_PERIOD, 1, () -> this.measuredAmps);
+        }
+
+        /**
+         * @return output multiplier from the last update, 1 when unrestricted
+         */
+        public double getScale() {
+            return this.scale;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    private final double          floorVolts;
+    private final double          minScale;
+    private final double          recoveryPerSecond;
+    private final DoubleSupplier  totalCurrent;
+    private final Mechanism[]     mechanisms = new Mechanism[MAX_MECHANISMS];
+
+    private int    count;
+    private double volts;
+    private double availableAmps;
+    private double unmonitoredAmps;
+    private double resistanceOhms;
+    private double lastVolts;
+    private double lastAmps;
+    private long   lastMicros;
+
+    /**
+     * @param floorVolts
+     *        Lowest battery voltage to allow under load, with margin above the
+     *        roboRIO brownout threshold
+     * @param nominalResistanceOhms
+     *        Starting estimate of battery and wiring resistance
+     * @param minScale
+     *        Smallest scale any mechanism is cut to
+     * @param recoveryPerSecond
+     *        Fastest rate a scale is allowed to rise back towards one
+     * @param totalCurrent
+     *        Current the whole robot is drawing from the battery, as read by
+     *        the power distribution panel
+     */
+    public PowerGovernor(double floorVolts, double nominalResistanceOhms, double minScale, double recoveryPerSecond,
+            DoubleSupplier totalCurrent) {
+        this.floorVolts = floorVolts;
+        this.resistanceOhms = nominalResistanceOhms;
+        this.minScale = minScale;
+        this.recoveryPerSecond = recoveryPerSecond;
+        this.totalCurrent = totalCurrent;
+        DashboardTelemetry.addDouble("PowerGovernor/Battery V", TELEMETRY_PERIOD, 0.05, () -> this.volts);
+        DashboardTelemetry.addDouble("PowerGovernor/Available A", TELEMETRY_PERIOD, 1, () -> this.availableAmps);
+        DashboardTelemetry.addDouble("PowerGovernor/Unmonitored A", TELEMETRY_PERIOD, 1, () -> this.unmonitoredAmps);
+        DashboardTelemetry.addDouble("PowerGovernor/Resistance mOhm", TELEMETRY_PERIOD, 0.5,
+                () -> this.resistanceOhms * 1000);
+    }
+
+    /**
+     * Adds a mechanism. Lower priority numbers are served first.
+     *
+     * @param budgetAmps
+     *        Most current this mechanism is given before lower priorities are
+     *        served
+     * @param current
+     *        Supply current the mechanism is drawing now
+     */
+    public Mechanism register(String name, int priority, double budgetAmps, DoubleSupplier current) {
+        if (this.count == MAX_MECHANISMS) {
+            throw new IllegalStateException("PowerGovernor is full, cannot register " + name);
+        }
+        Mechanism mechanism = new Mechanism(name, priority, budgetAmps, current);
+        // Keep the array sorted by priority so update() can walk it in order
+        int i = this.count++;
+        while (i > 0 && this.mechanisms[i - 1].priority > priority) {
+            this.mechanisms[i] = this.mechanisms[i - 1];
+            i--;
+        }
+        this.mechanisms[i] = mechanism;
+        return mechanism;
+    }
+
+    /**
+     * Call once per loop, before the commands that read the scales.
+     */
+    public void update() {
+        long now = RobotController.getFPGATime();
+        double dt = this.lastMicros == 0 ? 0 : (now - this.lastMicros) * 1e-6;
+        this.lastMicros = now;
+
+        double volts = RobotController.getBatteryVoltage();
+        double governedAmps = 0;
+        for (int i = 0; i < this.count; i++) {
+            Mechanism mechanism = this.mechanisms[i];
+            mechanism.measuredAmps = Math.max(0, mechanism.current.getAsDouble());
+            governedAmps += mechanism.measuredAmps;
+        }
+        // The panel and the Talons sample at different times, so the panel can read under the sum
+        double totalAmps = Math.max(governedAmps, this.totalCurrent.getAsDouble());
+        estimateResistance(volts, totalAmps);
+
+        // Current that would pull the battery down to the floor, less what nothing here controls
+        double openCircuitVolts = volts + totalAmps * this.resistanceOhms;
+        double available = Math.max(0, (openCircuitVolts - this.floorVolts) / this.resistanceOhms);
+        double unmonitored = totalAmps - governedAmps;
+        boolean brownedOut = RobotController.isBrownedOut();
+
+        double remaining = Math.max(0, available - unmonitored);
+        for (int i = 0; i < this.count; i++) {
+            Mechanism mechanism = this.mechanisms[i];
+            double allotted = Math.min(mechanism.budgetAmps, remaining);
+            // What the mechanism would draw if it were not being held back
+            double demand = mechanism.measuredAmps / mechanism.scale;
+            double target = demand > allotted ? allotted / demand : 1;
+            if (brownedOut) {
+                target = this.minScale;
+            }
+            target = Math.max(this.minScale, target);
+            if (target < mechanism.scale) {
+                mechanism.scale = target;
+            } else {
+                mechanism.scale = Math.min(target, mechanism.scale + this.recoveryPerSecond * dt);
+            }
+            remaining -= Math.min(allotted, demand);
+        }
+
+        this.volts = volts;
+        this.availableAmps = available;
+        this.unmonitoredAmps = unmonitored;
+    }
+
+    /**
+     * Refines the resistance estimate from the voltage drop across a load
+     * step since the last loop. Small steps are skipped since noise dominates
+     * them.
+     */
+    private void estimateResistance(double volts, double amps) {
+        double deltaAmps = amps - this.lastAmps;
+        if (this.lastVolts > 0 && Math.abs(deltaAmps) >= RESISTANCE_STEP_AMPS) {
+            double sample = (this.lastVolts - volts) / deltaAmps;
+            if (sample >= MIN_RESISTANCE_OHMS && sample <= MAX_RESISTANCE_OHMS) {
+                this.resistanceOhms += RESISTANCE_FILTER * (sample - this.resistanceOhms);
+            }
+        }
+        this.lastVolts = volts;
+        this.lastAmps = amps;
+    }
+}
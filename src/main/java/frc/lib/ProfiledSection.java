@@ -0,0 +1,161 @@
+package frc.lib;
+
+import java.util.Arrays;
+
+/**
+ * Timing record for one piece of per-loop code. Durations go into a
+ * preallocated ring buffer of raw samples and a log-linear histogram with
+ * about 3% resolution, so recording never allocates. Robot thread only.
+ *
+ * <p>With {@link LoopProfiler#trackAllocations(AllocationCounter)} on, each start/stop pair
+ * also counts the bytes the thread allocated in between.
+ */
+public final class ProfiledSection {
+    private static final int RING_SIZE      = 256;
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKETS    = 32;
+    private static final int SUB_BITS       = 5;
+    private static final int MAX_EXPONENT   = 30;
+    private static final int BUCKETS        = LINEAR_BUCKETS + (MAX_EXPONENT - 5) * SUB_BUCKETS;
+
+    // Set by LoopProfiler before any section is started
+    static boolean           trackAllocations;
+    static AllocationCounter allocationCounter;
+    static long              allocationOverhead;
+
+    private final String name;
+    private final long   budgetNanos;
+    private final long[] ring      = new long[RING_SIZE];
+    private final int[]  histogram = new int[BUCKETS];
+
+    private int  ringIndex;
+    private int  windowCount;
+    private long windowMaxNanos;
+    private long overruns;
+    private long allocationStart;
+    private long allocatedBytes;
+    private long allocationSamples;
+
+    ProfiledSection(String name, long budgetNanos) {
+        this.name = name;
+        this.budgetNanos = budgetNanos;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long start() {
+        if (trackAllocations) {
+            this.allocationStart = allocationCounter.threadAllocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    public void stop(long startNanos) {
+        record(System.nanoTime() - startNanos);
+        if (trackAllocations) {
+            this.allocatedBytes += allocationCounter.threadAllocatedBytes() - this.allocationStart - allocationOverhead;
+            this.allocationSamples++;
+        }
+    }
+
+    public void record(long nanos) {
+        this.ring[this.ringIndex] = nanos;
+        this.ringIndex = (this.ringIndex + 1) & (RING_SIZE - 1);
+        this.histogram[bucket(nanos / 1_000)]++;
+        this.windowCount++;
+        if (nanos > this.windowMaxNanos) {
+            this.windowMaxNanos = nanos;
+        }
+        if (this.budgetNanos > 0 && nanos > this.budgetNanos) {
+            this.overruns++;
+        }
+    }
+
+    /**
+     * @return the most recent sample in nanoseconds
+     */
+    public long getLast() {
+        return this.ring[(this.ringIndex - 1) & (RING_SIZE - 1)];
+    }
+
+    /**
+     * @param fraction
+     *        Percentile to report, 0-1
+     * @return the percentile of the current window in microseconds
+     */
+    public double getPercentileMicros(double fraction) {
+        if (this.windowCount == 0) {
+            return 0D;
+        }
+        long target = (long) Math.ceil(fraction * this.windowCount);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.histogram[bucket];
+            if (seen >= Math.max(1, target)) {
+                return bucketValue(bucket);
+            }
+        }
+        return bucketValue(BUCKETS - 1);
+    }
+
+    public double getMaxMicros() {
+        return this.windowMaxNanos / 1_000D;
+    }
+
+    public int getWindowCount() {
+        return this.windowCount;
+    }
+
+    /**
+     * @return number of samples, ever, that exceeded this section's budget
+     */
+    public long getOverruns() {
+        return this.overruns;
+    }
+
+    /**
+     * @return bytes allocated inside start/stop since the last
+     *         {@link #resetAllocations()}, when tracking is on
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * @return start/stop pairs counted in {@link #getAllocatedBytes()}
+     */
+    public long getAllocationSamples() {
+        return this.allocationSamples;
+    }
+
+    public void resetAllocations() {
+        this.allocatedBytes = 0;
+        this.allocationSamples = 0;
+    }
+
+    public void resetWindow() {
+        Arrays.fill(this.histogram, 0);
+        this.windowCount = 0;
+        this.windowMaxNanos = 0;
+    }
+
+    private static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(LINEAR_BUCKETS + (exponent - 6) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    private static double bucketValue(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 6;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (double) ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS));
+    }
+}
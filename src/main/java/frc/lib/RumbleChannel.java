@@ -0,0 +1,70 @@
+package frc.lib;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.wpi.first.wpilibj.GenericHID;
+import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+
+/**
+ * One side of a controller's rumble. Any thread may start or stop a pattern;
+ * the request is handed to the robot loop through a single atomic reference,
+ * and only the robot loop touches the HID, and only when the level changes.
+ */
+final class RumbleChannel {
+    private static final class Request {
+        private final RumblePattern pattern;
+        private final long          startMicros;
+
+        private Request(RumblePattern pattern, long startMicros) {
+            this.pattern = pattern;
+            this.startMicros = startMicros;
+        }
+    }
+
+    private static final Request STOP = new Request(null, 0);
+
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final RumbleType               type;
+
+    // Owned by the robot loop
+    private Request active;
+    private double  lastSent;
+
+    RumbleChannel(RumbleType type) {
+        this.type = type;
+    }
+
+    void start(RumblePattern pattern, long nowMicros) {
+        this.pending.set(new Request(pattern, nowMicros));
+    }
+
+    void stop() {
+        this.pending.set(STOP);
+    }
+
+    /**
+     * Applies any pending request and sends the current level if it differs
+     * from what the controller was last told. Robot loop only.
+     */
+    void update(GenericHID hid, long nowMicros) {
+        Request request = this.pending.getAndSet(null);
+        if (request != null) {
+            this.active = request == STOP ? null : request;
+        }
+
+        double level = 0D;
+        if (this.active != null) {
+            long elapsed = nowMicros - this.active.startMicros;
+            if (elapsed >= this.active.pattern.durationMicros()) {
+                this.active = null;
+            } else {
+                level = this.active.pattern.level(elapsed);
+            }
+        }
+
+        if (level != this.lastSent) {
+            hid.setRumble(this.type, level);
+            this.lastSent = level;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package frc.lib;
+
+import java.util.Arrays;
+
+/**
+ * An immutable rumble schedule: a run of strengths, each held until its end
+ * time. A steady rumble is a single run however long it lasts, and looking up
+ * the strength at any point in time is a binary search that never allocates.
+ */
+public final class RumblePattern {
+    // Ramps are split into this many equal runs, whatever their length
+    private static final int RAMP_STEPS = 50;
+
+    private final double[] levels;
+    // End of each run, in microseconds from the start of the pattern; never decreasing
+    private final long[]   endMicros;
+
+    private RumblePattern(double[] levels, long[] endMicros) {
+        this.levels = levels;
+        this.endMicros = endMicros;
+    }
+
+    /**
+     * A steady rumble
+     *
+     * @param duration
+     *        Time in seconds for the rumble to last
+     * @param power
+     *        Strength of rumble. Values range from 0-1
+     */
+    public static RumblePattern constant(double duration, double power) {
+        return new RumblePattern(new double[] { clamp(power) }, new long[] { micros(duration) });
+    }
+
+    /**
+     * A number of equal pulses separated by silence
+     *
+     * @param count
+     *        Number of pulses
+     * @param onTime
+     *        Time in seconds each pulse lasts
+     * @param offTime
+     *        Time in seconds between pulses
+     * @param power
+     *        Strength of each pulse. Values range from 0-1
+     */
+    public static RumblePattern pulses(int count, double onTime, double offTime, double power) {
+        int runs = Math.max(0, 2 * count - 1);
+        double[] levels = new double[runs];
+        long[] ends = new long[runs];
+        long on = micros(onTime);
+        long off = micros(offTime);
+        long end = 0;
+        for (int i = 0; i < runs; i++) {
+            boolean pulse = i % 2 == 0;
+            levels[i] = pulse ? clamp(power) : 0D;
+            end = add(end, pulse ? on : off);
+            ends[i] = end;
+        }
+        return new RumblePattern(levels, ends);
+    }
+
+    /**
+     * A linear change in strength
+     *
+     * @param duration
+     *        Time in seconds for the ramp to last
+     * @param from
+     *        Starting strength. Values range from 0-1
+     * @param to
+     *        Final strength. Values range from 0-1
+     */
+    public static RumblePattern ramp(double duration, double from, double to) {
+        double[] levels = new double[RAMP_STEPS];
+        long[] ends = new long[RAMP_STEPS];
+        long total = micros(duration);
+        for (int i = 0; i < RAMP_STEPS; i++) {
+            levels[i] = clamp(from + (to - from) * i / (RAMP_STEPS - 1));
+            // Divide first so that very long ramps cannot overflow
+            ends[i] = total / RAMP_STEPS * (i + 1) + total % RAMP_STEPS * (i + 1) / RAMP_STEPS;
+        }
+        return new RumblePattern(levels, ends);
+    }
+
+    /**
+     * @return this pattern followed immediately by <code>next</code>
+     */
+    public RumblePattern then(RumblePattern next) {
+        long offset = durationMicros();
+        double[] levels = Arrays.copyOf(this.levels, this.levels.length + next.levels.length);
+        System.arraycopy(next.levels, 0, levels, this.levels.length, next.levels.length);
+        long[] ends = Arrays.copyOf(this.endMicros, this.endMicros.length + next.endMicros.length);
+        for (int i = 0; i < next.endMicros.length; i++) {
+            ends[this.endMicros.length + i] = add(offset, next.endMicros[i]);
+        }
+        return new RumblePattern(levels, ends);
+    }
+
+    long durationMicros() {
+        return this.endMicros.length == 0 ? 0L : this.endMicros[this.endMicros.length - 1];
+    }
+
+    double level(long elapsedMicros) {
+        if (elapsedMicros < 0 || elapsedMicros >= durationMicros()) {
+            return 0D;
+        }
+        // First run that ends after the elapsed time
+        int low = 0;
+        int high = this.endMicros.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.endMicros[mid] <= elapsedMicros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return this.levels[low];
+    }
+
+    private static long micros(double seconds) {
+        // Math.round saturates at Long.MAX_VALUE and maps NaN to zero
+        return Math.max(0L, Math.round(seconds * 1_000_000D));
+    }
+
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static double clamp(double power) {
+        return Math.max(0D, Math.min(1D, power));
+    }
+}
@@ -0,0 +1,34 @@
+package frc.lib;
+
+/**
+ * A named set of {@link AxisCurve}s, one per controller axis, that a
+ * {@link DTXboxController} shapes its input through. Axes without a curve
+ * pass through unchanged. Profiles are compiled when built, so switching
+ * between them at runtime is a field write; slew limited axes ramp up from
+ * wherever the last profile left them.
+ */
+public final class ShapingProfile {
+    private final String            name;
+    private final AxisCurve.Table[] tables = new AxisCurve.Table[DTXboxController.AXIS_COUNT];
+
+    public ShapingProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Compiles <code>curve</code> for <code>axis</code>.
+     */
+    public ShapingProfile with(DTXboxController.Axis axis, AxisCurve curve) {
+        this.tables[axis.ordinal()] = curve.compile();
+        return this;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    double shape(int axis, double input, double previous, double dtSeconds) {
+        AxisCurve.Table table = this.tables[axis];
+        return table == null ? input : table.apply(input, previous, dtSeconds);
+    }
+}
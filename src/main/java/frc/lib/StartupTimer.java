@@ -0,0 +1,88 @@
+package frc.lib;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Times robot code startup, from the JVM launching to the first loop. Phases
+ * are marked in order as startup reaches them; the first robot loop calls
+ * {@link #finish()}, which publishes the breakdown under the
+ * <code>Startup</code> table. Desktop tools can print it from
+ * {@link #getReport()}.
+ */
+public final class StartupTimer {
+    private static final int MAX_PHASES = 16;
+    // The OS clock can jump when the Driver Station connects, so ignore nonsense JVM ages
+    private static final long MAX_JVM_AGE_MILLIS = 10 * 60 * 1000;
+
+    private static final String[] NAMES = new String[MAX_PHASES];
+    private static final long[]   NANOS = new long[MAX_PHASES];
+
+    private static int     count;
+    private static long    jvmToMainMillis = -1;
+    private static boolean finished;
+    private static String  report = "Startup not finished";
+
+    private StartupTimer() {}
+
+    /**
+     * Marks the start of robot code. Call first thing in main.
+     */
+    public static void start() {
+        long jvmStart = ProcessHandle.current().info().startInstant().map(i -> i.toEpochMilli()).orElse(-1L);
+        long age = System.currentTimeMillis() - jvmStart;
+        if (jvmStart > 0 && age >= 0 && age < MAX_JVM_AGE_MILLIS) {
+            jvmToMainMillis = age;
+        }
+        mark("main");
+    }
+
+    /**
+     * Records that startup has reached a phase. Extra phases past the limit
+     * are dropped.
+     */
+    public static synchronized void mark(String phase) {
+        if (finished || count == MAX_PHASES) {
+            return;
+        }
+        NAMES[count] = phase;
+        NANOS[count] = System.nanoTime();
+        count++;
+    }
+
+    /**
+     * Marks the first loop and reports. Cheap to call every loop; only the
+     * first call does anything.
+     */
+    public static void finish() {
+        if (finished) {
+            return;
+        }
+        mark("first robotPeriodic");
+        finished = true;
+
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("Startup");
+        StringBuilder text = new StringBuilder("Startup timing:\n");
+        if (jvmToMainMillis >= 0) {
+            text.append(String.format("  %-32s %8d ms%n", "JVM launch -> main", jvmToMainMillis));
+            table.getEntry("JVM to main ms").setDouble(jvmToMainMillis);
+        }
+        for (int i = 1; i < count; i++) {
+            double millis = (NANOS[i] - NANOS[i - 1]) / 1e6;
+            text.append(String.format("  %-32s %8.1f ms%n", NAMES[i - 1] + " -> " + NAMES[i], millis));
+            table.getEntry(NAMES[i] + " ms").setDouble(millis);
+        }
+        double total = (NANOS[count - 1] - NANOS[0]) / 1e6 + Math.max(0, jvmToMainMillis);
+        text.append(String.format("  %-32s %8.1f ms", "Total", total));
+        table.getEntry("Total ms").setDouble(total);
+        report = text.toString();
+    }
+
+    /**
+     * @return the breakdown published by {@link #finish()}, one phase per
+     *         line
+     */
+    public static String getReport() {
+        return report;
+    }
+}
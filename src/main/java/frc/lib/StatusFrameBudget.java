@@ -0,0 +1,91 @@
+package frc.lib;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Sets a Talon's status frame periods from what its subsystem actually reads.
+ * Each frame runs at the fastest rate any declared need asks for; frames
+ * nothing needs are slowed to the 255 ms maximum.
+ *
+ * <pre>
+ * new StatusFrameBudget(talon, "Shooter")
+ *     .need(TalonTelemetry.SELECTED_SENSOR, 10)
+ *     .need(TalonTelemetry.APPLIED_OUTPUT, 20)
+ *     .apply();
+ * </pre>
+ */
+public class StatusFrameBudget {
+    private static final int UNUSED_PERIOD_MS = 255;
+    private static final int TIMEOUT_MS       = 30;
+
+    private static final StatusFrameEnhanced[] BUDGETED_FRAMES = {
+        StatusFrameEnhanced.Status_1_General,
+        StatusFrameEnhanced.Status_2_Feedback0,
+        StatusFrameEnhanced.Status_3_Quadrature,
+        StatusFrameEnhanced.Status_4_AinTempVbat,
+        StatusFrameEnhanced.Status_8_PulseWidth,
+        StatusFrameEnhanced.Status_10_MotionMagic,
+        StatusFrameEnhanced.Status_12_Feedback1,
+        StatusFrameEnhanced.Status_13_Base_PIDF0,
+        StatusFrameEnhanced.Status_14_Turn_PIDF1
+    };
+
+    private static double totalFramesPerSecond;
+
+    private final TalonSRX                          talon;
+    private final String                            name;
+    private final Map<StatusFrameEnhanced, Integer> periods = new EnumMap<>(StatusFrameEnhanced.class);
+
+    public StatusFrameBudget(TalonSRX talon, String name) {
+        this.talon = talon;
+        this.name = name;
+    }
+
+    /**
+     * @param telemetry
+     *        Value the subsystem reads
+     * @param periodMs
+     *        Oldest the value may be, in milliseconds
+     */
+    public StatusFrameBudget need(TalonTelemetry telemetry, int periodMs) {
+        this.periods.merge(telemetry.frame, periodMs, Math::min);
+        return this;
+    }
+
+    /**
+     * Sends the periods to the Talon and publishes the frame rate this device
+     * is budgeted for under <code>CAN/&lt;name&gt;</code>.
+     *
+     * @return status frames per second this device will send
+     */
+    public double apply() {
+        double framesPerSecond = 0;
+        for (StatusFrameEnhanced frame : BUDGETED_FRAMES) {
+            int period = this.periods.getOrDefault(frame, UNUSED_PERIOD_MS);
+            this.talon.setStatusFramePeriod(frame, period, TIMEOUT_MS);
+            framesPerSecond += 1000D / period;
+        }
+        synchronized (StatusFrameBudget.class) {
+            totalFramesPerSecond += framesPerSecond;
+        }
+        NetworkTableInstance.getDefault()
+                            .getTable("CAN")
+                            .getSubTable(this.name)
+                            .getEntry("Status frames per s")
+                            .setDouble(framesPerSecond);
+        return framesPerSecond;
+    }
+
+    /**
+     * @return status frames per second budgeted across every applied device
+     */
+    public static synchronized double getTotalFramesPerSecond() {
+        return totalFramesPerSecond;
+    }
+}
@@ -0,0 +1,97 @@
+package frc.lib;
+
+import java.util.function.Supplier;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+/**
+ * A {@link TimedRobot} running its own loop in HAL simulation, on a thread of
+ * its own, with simulated time paused and stepped by the caller. The robot
+ * goes through the same code path as on the field: robotInit, mode
+ * transitions, the mode and robot periodics, and every callback registered
+ * with <code>addPeriodic</code>, each when its notifier comes due.
+ *
+ * <p>{@link #step(double)} returns once the robot thread has run everything
+ * due in the step and is waiting again, so the caller can set Driver Station
+ * and controller state between steps without racing the loop. An exception on
+ * the robot thread is rethrown from the next step.
+ */
+public final class SteppedRobot<T extends TimedRobot> implements AutoCloseable {
+    private final T      robot;
+    private final Thread thread;
+
+    private volatile Throwable failure;
+
+    private SteppedRobot(T robot) {
+        this.robot = robot;
+        this.thread = new Thread(robot::startCompetition, "Robot");
+        this.thread.setDaemon(true);
+        this.thread.setUncaughtExceptionHandler((thread, e) -> this.failure = e);
+    }
+
+    /**
+     * Initializes the HAL with timing paused, builds the robot and runs its
+     * robotInit. The Driver Station is attached and disabled.
+     */
+    public static <T extends TimedRobot> SteppedRobot<T> start(Supplier<T> factory) {
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+
+        SteppedRobot<T> stepped = new SteppedRobot<>(factory.get());
+        stepped.thread.start();
+        // Waits for robotInit, until the loop is parked on its notifier
+        stepped.step(0);
+        return stepped;
+    }
+
+    public T getRobot() {
+        return this.robot;
+    }
+
+    /**
+     * Enables the robot in teleop from the next loop.
+     */
+    public void enableTeleop() {
+        DriverStationSim.setAutonomous(false);
+        DriverStationSim.setTest(false);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+    }
+
+    /**
+     * Enables the robot in test mode from the next loop.
+     */
+    public void enableTest() {
+        DriverStationSim.setAutonomous(false);
+        DriverStationSim.setTest(true);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+    }
+
+    /**
+     * Advances simulated time, running every loop and periodic callback that
+     * comes due.
+     */
+    public void step(double seconds) {
+        SimHooks.stepTiming(seconds);
+        Throwable e = this.failure;
+        if (e != null) {
+            throw new IllegalStateException("Robot thread failed", e);
+        }
+    }
+
+    /**
+     * Ends the robot's loop and waits for its thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        this.robot.endCompetition();
+        this.thread.join();
+    }
+}
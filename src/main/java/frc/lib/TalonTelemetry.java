@@ -0,0 +1,36 @@
+package frc.lib;
+
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+
+/**
+ * Values a subsystem can read back from a Talon SRX, and the status frame
+ * each one arrives in.
+ */
+public enum TalonTelemetry {
+    /** Applied output, faults and limit switches */
+    APPLIED_OUTPUT(StatusFrameEnhanced.Status_1_General),
+    /** Selected sensor position and velocity */
+    SELECTED_SENSOR(StatusFrameEnhanced.Status_2_Feedback0),
+    /** Stator and supply current */
+    CURRENT(StatusFrameEnhanced.Status_2_Feedback0),
+    /** Raw quadrature position and velocity */
+    QUADRATURE(StatusFrameEnhanced.Status_3_Quadrature),
+    /** Bus voltage, temperature and analog input */
+    BATTERY_AND_TEMPERATURE(StatusFrameEnhanced.Status_4_AinTempVbat),
+    /** Pulse width sensor position */
+    PULSE_WIDTH(StatusFrameEnhanced.Status_8_PulseWidth),
+    /** Motion magic target position and velocity */
+    MOTION_MAGIC(StatusFrameEnhanced.Status_10_MotionMagic),
+    /** Auxiliary sensor position and velocity */
+    AUXILIARY_SENSOR(StatusFrameEnhanced.Status_12_Feedback1),
+    /** Primary closed-loop error and integral */
+    CLOSED_LOOP_ERROR(StatusFrameEnhanced.Status_13_Base_PIDF0),
+    /** Auxiliary closed-loop error and integral */
+    AUXILIARY_CLOSED_LOOP_ERROR(StatusFrameEnhanced.Status_14_Turn_PIDF1);
+
+    final StatusFrameEnhanced frame;
+
+    TalonTelemetry(StatusFrameEnhanced frame) {
+        this.frame = frame;
+    }
+}
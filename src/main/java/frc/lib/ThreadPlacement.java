@@ -0,0 +1,90 @@
+package frc.lib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Threads;
+
+/**
+ * Scheduling for one thread: which CPU it runs on and at what priority. Each
+ * thread applies its own placement, since priority can only be set from the
+ * thread itself. Placement is best effort: a thread that cannot be placed
+ * keeps running where the kernel puts it, with a warning on the Driver
+ * Station.
+ *
+ * <p>Priority goes through WPILib's {@link Threads}, as SCHED_FIFO when real
+ * time. Affinity has no Java API, so it is set with <code>taskset</code> on
+ * the thread's kernel id, and only on the robot.
+ */
+public final class ThreadPlacement {
+    /** Any CPU, normal priority */
+    public static final ThreadPlacement DEFAULT = new ThreadPlacement(-1, false, 0);
+
+    private static final Path THREAD_SELF = Path.of("/proc/thread-self");
+
+    private final int     cpu;
+    private final boolean realTime;
+    private final int     priority;
+
+    /**
+     * @param cpu
+     *        CPU to pin the thread to, or -1 for any
+     * @param realTime
+     *        Whether to run the thread SCHED_FIFO
+     * @param priority
+     *        Real-time priority, 1 to 99; ignored when not real time
+     */
+    public ThreadPlacement(int cpu, boolean realTime, int priority) {
+        this.cpu = cpu;
+        this.realTime = realTime;
+        this.priority = priority;
+    }
+
+    /**
+     * Places the calling thread. Forks <code>taskset</code> when pinning, so
+     * call it once when the thread starts, not from a loop.
+     *
+     * @param name
+     *        Thread name for the warnings
+     * @return false if any part of the placement could not be applied
+     */
+    public boolean applyToCurrentThread(String name) {
+        boolean applied = true;
+        if (this.realTime || Threads.getCurrentThreadIsRealTime()) {
+            if (!Threads.setCurrentThreadPriority(this.realTime, this.realTime ? this.priority : 0)) {
+                DriverStation.reportWarning("Could not set " + name + " thread priority", false);
+                applied = false;
+            }
+        }
+        if (this.cpu >= 0 && RobotBase.isReal()) {
+            try {
+                // Resolves to <pid>/task/<tid>
+                String tid = Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+                Process taskset = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(this.cpu), tid)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (taskset.waitFor() != 0) {
+                    DriverStation.reportWarning("Could not pin " + name + " thread to CPU " + this.cpu, false);
+                    applied = false;
+                }
+            } catch (IOException e) {
+                DriverStation.reportWarning("Could not pin " + name + " thread: " + e.getMessage(), false);
+                applied = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                applied = false;
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public String toString() {
+        return (this.cpu < 0 ? "any CPU" : "CPU " + this.cpu)
+                + (this.realTime ? ", real time priority " + this.priority : ", normal priority");
+    }
+}
@@ -0,0 +1,218 @@
+package frc.lib;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * A set of numeric parameters that can be changed while the robot runs, from
+ * NetworkTables. Defaults come from a properties file that ships with the
+ * code. Changes are saved to a second file, kept apart from the defaults, that
+ * holds only the values that differ from them. At startup the overlay is
+ * loaded over the defaults, so a redeploy neither loses a tuned value nor
+ * hides a new default for a value nobody has tuned. Every parameter has a
+ * valid range: values outside it are clamped into it, and values that are not
+ * numbers are ignored, whether they come from a file or from NetworkTables,
+ * and the value kept is published back. Readers never see the
+ * parameters individually: every change builds a new immutable snapshot
+ * through the factory and swaps it in atomically, so hot-path code does one
+ * reference read and then uses plain fields.
+ *
+ * <pre>
+ * int speed = set.add("FEEDER_SPEED", 1.0, 0, 1);
+ * set.start(values -&gt; new Tunables(values[speed]));
+ * </pre>
+ *
+ * @param <S>
+ *        Snapshot type built from the parameter values
+ */
+public class TunableSet<S> {
+    private final NetworkTable   table;
+    private final Path           defaultsFile;
+    private final Path           overlayFile;
+    private final List<String>   names    = new ArrayList<>();
+    private final List<Double>   defaults = new ArrayList<>();
+    private final List<Double>   minimums = new ArrayList<>();
+    private final List<Double>   maximums = new ArrayList<>();
+    private final AtomicReference<S> snapshot = new AtomicReference<>();
+
+    private Function<double[], S> factory;
+    private double[]              baseline;
+    private double[]              values;
+    private DoubleEntry[]         entries;
+
+    /**
+     * @param tableName
+     *        NetworkTables table the parameters are published under
+     * @param defaultsFile
+     *        Properties file the defaults are loaded from; never written
+     * @param overlayFile
+     *        Properties file changed values are saved to and loaded from,
+     *        over the defaults. Keep it out of the deploy directory, which a
+     *        deploy overwrites.
+     */
+    public TunableSet(String tableName, Path defaultsFile, Path overlayFile) {
+        this.table = NetworkTableInstance.getDefault().getTable(tableName);
+        this.defaultsFile = defaultsFile;
+        this.overlayFile = overlayFile;
+    }
+
+    /**
+     * Declares a parameter. Only valid before {@link #start(Function)}.
+     *
+     * @param minimum
+     *        Smallest value the parameter may take
+     * @param maximum
+     *        Largest value the parameter may take
+     * @return index of the parameter in the values passed to the factory
+     */
+    public int add(String name, double defaultValue, double minimum, double maximum) {
+        if (this.factory != null) {
+            throw new IllegalStateException("Cannot add " + name + " after the set has started");
+        }
+        if (!(minimum <= defaultValue && defaultValue <= maximum)) {
+            throw new IllegalArgumentException(name + " default " + defaultValue + " is outside ["
+                    + minimum + ", " + maximum + "]");
+        }
+        this.names.add(name);
+        this.defaults.add(defaultValue);
+        this.minimums.add(minimum);
+        this.maximums.add(maximum);
+        return this.names.size() - 1;
+    }
+
+    /**
+     * Loads the defaults and then the saved changes, publishes the values and
+     * builds the first snapshot.
+     *
+     * @param factory
+     *        Builds a snapshot from the values, indexed as returned by
+     *        {@link #add(String, double, double, double)}. Must not keep the
+     *        array.
+     */
+    public synchronized void start(Function<double[], S> factory) {
+        this.factory = factory;
+        this.values = new double[this.names.size()];
+        for (int i = 0; i < this.values.length; i++) {
+            this.values[i] = this.defaults.get(i);
+        }
+        load(this.defaultsFile);
+        this.baseline = this.values.clone();
+        load(this.overlayFile);
+        this.snapshot.set(factory.apply(this.values.clone()));
+
+        NetworkTableInstance instance = NetworkTableInstance.getDefault();
+        this.entries = new DoubleEntry[this.values.length];
+        for (int i = 0; i < this.values.length; i++) {
+            int index = i;
+            DoubleEntry entry = this.table.getDoubleTopic(this.names.get(i)).getEntry(this.values[i]);
+            entry.set(this.values[i]);
+            this.entries[i] = entry;
+            instance.addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueRemote),
+                    event -> update(index, event.valueData.value.getDouble()));
+        }
+    }
+
+    /**
+     * @return the current snapshot. Read it once per loop and use that for the
+     *         whole loop, so every reader sees the same values.
+     */
+    public S get() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * Runs on the NetworkTables listener thread, off the robot loop.
+     */
+    private synchronized void update(int index, double value) {
+        double kept = validate(index, value, "from NetworkTables");
+        if (kept != value) {
+            this.entries[index].set(kept);
+        }
+        if (this.values[index] == kept) {
+            return;
+        }
+        this.values[index] = kept;
+        this.snapshot.set(this.factory.apply(this.values.clone()));
+        save();
+    }
+
+    private void load(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not read " + file + ", ignoring it", e.getStackTrace());
+            return;
+        }
+        for (int i = 0; i < this.values.length; i++) {
+            String text = properties.getProperty(this.names.get(i));
+            if (text == null) {
+                continue;
+            }
+            try {
+                this.values[i] = validate(i, Double.parseDouble(text.trim()), "in " + file);
+            } catch (NumberFormatException e) {
+                DriverStation.reportWarning("Ignoring " + this.names.get(i) + "=" + text + " in " + file, false);
+            }
+        }
+    }
+
+    /**
+     * @return <code>value</code> clamped into the parameter's range, or the
+     *         current value if it is not a finite number
+     */
+    private double validate(int index, double value, String source) {
+        String name = this.names.get(index);
+        if (!Double.isFinite(value)) {
+            DriverStation.reportWarning("Ignoring " + name + "=" + value + " " + source, false);
+            return this.values[index];
+        }
+        double minimum = this.minimums.get(index);
+        double maximum = this.maximums.get(index);
+        double clamped = Math.max(minimum, Math.min(maximum, value));
+        if (clamped != value) {
+            DriverStation.reportWarning("Clamping " + name + "=" + value + " " + source + " to [" + minimum + ", "
+                    + maximum + "]", false);
+        }
+        return clamped;
+    }
+
+    /**
+     * Writes the values that differ from the defaults, in declaration order,
+     * so the file diffs cleanly. A value changed back to its default drops
+     * out.
+     */
+    private void save() {
+        try (BufferedWriter writer = Files.newBufferedWriter(this.overlayFile)) {
+            writer.write("# Saved by TunableSet when a value is changed from NetworkTables; loaded over "
+                    + this.defaultsFile.getFileName());
+            writer.newLine();
+            for (int i = 0; i < this.values.length; i++) {
+                if (this.values[i] != this.baseline[i]) {
+                    writer.write(this.names.get(i) + "=" + this.values[i]);
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not save " + this.overlayFile, e.getStackTrace());
+        }
+    }
+}
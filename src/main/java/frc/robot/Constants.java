@@ -13,7 +13,135 @@ package frc.robot;
  * constants are needed, to reduce verbosity.
  */
 public final class Constants {
+    // Values also declared in Tunables are only defaults; the robot reads them from Tunables,
+    // which loads deploy/tunables.properties, then any changes saved from NetworkTables, and
+    // follows NetworkTables at runtime.
     public static final double FEEDER_SPEED = 1;
-    public static final double MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS = 0.7;
-    public static final double MAX_KIDDIE_DRIVE_VELOCITY_ROTATION = 0.7;
+    // Output caps. 0.49 is what the old 0.7 cap on the squared stick gave once arcadeDrive
+    // squared it again
+    public static final double MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS = 0.49;
+    public static final double MAX_KIDDIE_DRIVE_VELOCITY_ROTATION = 0.49;
+    // Kiddie drive sticks ramp up no faster than this, in full scale per second. Letting go or
+    // easing off is never limited, so the robot still stops as soon as the stick is released.
+    public static final double KIDDIE_DRIVE_SLEW_RATE = 2.0;
+
+    // Robot loop timing and thread placement. Real-time priority puts a thread ahead of
+    // NetworkTables and the Driver Station connection, so only give it to the robot thread once
+    // the loop fits its period with margin. CPUs are 0 or 1 on the roboRIO, -1 for any.
+    public static final double LOOP_PERIOD = 0.02;
+    // Loop starts later than this after their scheduled time count as overruns
+    public static final double LOOP_JITTER_BUDGET = 0.001;
+    public static final boolean ROBOT_THREAD_REAL_TIME = false;
+    public static final int ROBOT_THREAD_PRIORITY = 15;
+    public static final int ROBOT_THREAD_CPU = -1;
+    public static final boolean ODOMETRY_THREAD_REAL_TIME = false;
+    public static final int ODOMETRY_THREAD_PRIORITY = 20;
+    public static final int ODOMETRY_THREAD_CPU = -1;
+    // Log writers only touch files, so they share one CPU rather than waking on the loop's
+    public static final int LOG_WRITER_CPU = 0;
+
+    // Drive from a 5 ms periodic instead of the 20 ms scheduler pass
+    public static final boolean FAST_DRIVE_LOOP = false;
+    public static final double FAST_DRIVE_PERIOD = 0.005;
+
+    // Telemetry logs kept in logs/, counting the one each boot opens. The oldest go first.
+    public static final int TELEMETRY_LOG_KEEP_FILES = 10;
+    public static final long TELEMETRY_LOG_KEEP_BYTES = 100L << 20;
+
+    // Dashboard values are polled at this period and sent when they change, or once a second
+    public static final double TELEMETRY_PERIOD = 0.1;
+
+    // Record controller input to logs/input-*.rec for replay in simulation. Off for matches: it
+    // opens a second log and writer thread, and the telemetry log already has the input.
+    public static final boolean RECORD_INPUTS = false;
+
+    // Shooter velocity loop. The Talon runs the PID on its encoder; kS/kV are sent as an arbitrary
+    // feedforward under 12 V voltage compensation, so the wheel speed holds as the battery drains.
+    public static final double SHOOTER_TARGET_RPM = 4000;
+    public static final double SHOOTER_AT_SPEED_TOLERANCE_RPM = 150;
+    // How long the wheel must stay in the band before a disc is fed, against encoder noise
+    public static final double SHOOTER_AT_SPEED_DEBOUNCE = 0.06;
+    public static final double SHOOTER_KS_VOLTS = 0.3;
+    public static final double SHOOTER_KV_VOLTS_PER_RPM = 12.0 / 5330;
+    public static final boolean SHOOTER_SENSOR_PHASE = false;
+    public static final double SHOOTER_KP = 0.3;
+    public static final double SHOOTER_KI = 0;
+    public static final double SHOOTER_KD = 0;
+    public static final double NOMINAL_VOLTAGE = 12.0;
+    public static final int CAN_TIMEOUT_MS = 30;
+
+    // Burst fire. A disc is counted as shot when the wheel dips this far below its target.
+    public static final double SHOT_DETECT_DROP_RPM = 300;
+    public static final double FEED_TIMEOUT = 1.0;
+    public static final int BURST_SIZE = 3;
+
+    // Power governor. Current is shared so the battery stays above the floor under load, which
+    // leaves margin over the 6.8 V roboRIO brownout. Budgets are the most each mechanism is
+    // given before lower priorities are served.
+    public static final double POWER_FLOOR_VOLTS = 7.5;
+    public static final double POWER_NOMINAL_RESISTANCE_OHMS = 0.02;
+    public static final double POWER_MIN_SCALE = 0.2;
+    public static final double POWER_RECOVERY_PER_SECOND = 0.5;
+    public static final double FEEDER_CURRENT_BUDGET_AMPS = 30;
+    public static final double DRIVE_CURRENT_BUDGET_AMPS = 160;
+    public static final double SHOOTER_CURRENT_BUDGET_AMPS = 60;
+
+    // Shooter and feeder motor thermal model, for CIMs: about 0.6 °C/W to the air and a five
+    // minute time constant. Output is limited so the windings stay under the maximum for at
+    // least the horizon at the present draw.
+    public static final double CIM_THERMAL_RESISTANCE = 0.6;
+    public static final double CIM_THERMAL_CAPACITANCE = 500;
+    public static final double CIM_MAX_CELSIUS = 100;
+    public static final double THERMAL_HORIZON_SECONDS = 30;
+
+    // Drivetrain model for autonomous. Kit-of-parts chassis, one CIM per side through 10.71:1 to
+    // 6 in wheels, with the encoders on the wheel shafts. Feedforward is from the CIM free speed
+    // until the drivetrain is characterized; see DriveFeedforward for the measured gains.
+    public static final double DRIVE_TRACK_WIDTH_METERS = 0.66;
+    public static final double DRIVE_KS_VOLTS = 1.0;
+    public static final double DRIVE_KV_VOLTS_PER_MPS = 3.0;
+    public static final double DRIVE_KA_VOLTS_PER_MPS2 = 0.5;
+    public static final double DRIVE_VELOCITY_KP = 1.0;
+    // Closed-loop teleop drive. Arcade stick fractions become wheel speeds up to the top speed the
+    // DriveFeedforward gains allow at nominal voltage, held by each Talon's velocity loop. kP is in Talon
+    // units, 1023 output per tick per 100 ms of error; 0.1 is about 1 V per m/s. Start toggles it.
+    public static final boolean DRIVE_VELOCITY_MODE = false;
+    public static final boolean DRIVE_SENSOR_PHASE = false;
+    public static final double DRIVE_TALON_KP = 0.1;
+    public static final double DRIVE_TALON_KI = 0;
+    public static final double DRIVE_TALON_KD = 0;
+    // Drivetrain characterization in test mode: slow voltage ramps for kS and kV, then steps for
+    // kA, each way. Each run stops at the time or distance limit, so clear 3 m in front and behind.
+    public static final double CHARACTERIZE_RAMP_VOLTS_PER_SECOND = 0.5;
+    public static final double CHARACTERIZE_STEP_VOLTS = 6;
+    public static final double CHARACTERIZE_RUN_SECONDS = 10;
+    public static final double CHARACTERIZE_MAX_DISTANCE_METERS = 3;
+    public static final double CHARACTERIZE_REST_SECONDS = 1.5;
+    public static final double CHARACTERIZE_MIN_VELOCITY_MPS = 0.05;
+    public static final double CHARACTERIZE_MIN_R_SQUARED = 0.9;
+    // Odometry runs on its own thread at this period, with the drive encoder frames to match
+    public static final double ODOMETRY_PERIOD = 0.005;
+    // Set once an ADXRS450 is fitted to the SPI port; without it odometry takes its heading from
+    // the wheels
+    public static final boolean DRIVE_HAS_GYRO = false;
+
+    // Trajectory following. Paths are generated at build time by PathCompiler, within these limits.
+    public static final double RAMSETE_B = 2.0;
+    public static final double RAMSETE_ZETA = 0.7;
+    public static final double AUTO_MAX_VELOCITY_MPS = 2.0;
+    public static final double AUTO_MAX_ACCELERATION_MPS2 = 1.5;
+    public static final double AUTO_MAX_VOLTAGE = 10.0;
+
+    // Simulation models. The drivetrain is modelled as the kit-of-parts chassis with one CIM
+    // per side; the shooter and feeder as a single CIM driving a flywheel.
+    public static final int TALON_ENCODER_CPR = 4096;
+    public static final double SHOOTER_GEARING = 1.0;
+    public static final double SHOOTER_MOI_KG_M2 = 0.004;
+    public static final double FEEDER_GEARING = 5.0;
+    public static final double FEEDER_MOI_KG_M2 = 0.001;
+    // Each simulated disc leaves after the feeder has pushed for this long and costs this much wheel speed
+    public static final double SIM_FEED_TIME_PER_DISC = 0.15;
+    public static final double SIM_DISC_SPEED_LOSS = 0.15;
+    public static final double SIM_BATTERY_VOLTAGE = 12.0;
+    public static final double SIM_BATTERY_RESISTANCE_OHMS = 0.02;
 }
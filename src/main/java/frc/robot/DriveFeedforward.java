@@ -0,0 +1,115 @@
+package frc.robot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.commands.CharacterizeDriveCommand;
+
+/**
+ * Drivetrain feedforward gains, as last measured on the robot by
+ * {@link CharacterizeDriveCommand}. They are saved to
+ * drive-feedforward.properties in the operating directory, not the deploy
+ * directory, so a deploy does not overwrite a measurement, and read back by
+ * {@link #load()}, which {@link RobotContainer} calls first thing at startup.
+ * Until then, and until the robot has been characterized, the gains are the
+ * estimates in {@link Constants}.
+ *
+ * <p>Like {@link Tunables}, call {@link #get()} once and use the returned
+ * gains for the whole calculation. A new measurement takes effect at once.
+ */
+public final class DriveFeedforward {
+    private static final Path FILE =
+            Filesystem.getOperatingDirectory().toPath().resolve("drive-feedforward.properties");
+
+    private static final DriveFeedforward ESTIMATE = new DriveFeedforward(Constants.DRIVE_KS_VOLTS,
+            Constants.DRIVE_KV_VOLTS_PER_MPS, Constants.DRIVE_KA_VOLTS_PER_MPS2);
+
+    private static volatile DriveFeedforward current = ESTIMATE;
+
+    public final double ksVolts;
+    public final double kvVoltsPerMps;
+    public final double kaVoltsPerMps2;
+
+    public DriveFeedforward(double ksVolts, double kvVoltsPerMps, double kaVoltsPerMps2) {
+        this.ksVolts = ksVolts;
+        this.kvVoltsPerMps = kvVoltsPerMps;
+        this.kaVoltsPerMps2 = kaVoltsPerMps2;
+    }
+
+    /**
+     * @param velocity
+     *        Wheel speed in meters per second
+     * @param acceleration
+     *        Wheel acceleration in meters per second squared
+     * @return volts to hold that speed and acceleration
+     */
+    public double calculate(double velocity, double acceleration) {
+        return this.ksVolts * Math.signum(velocity) + this.kvVoltsPerMps * velocity
+                + this.kaVoltsPerMps2 * acceleration;
+    }
+
+    /**
+     * @param maxVoltage
+     *        Most voltage the motors will be given
+     * @return fastest the wheels can be held at a steady speed, in meters per
+     *         second
+     */
+    public double maxAchievableVelocity(double maxVoltage) {
+        return (maxVoltage - this.ksVolts) / this.kvVoltsPerMps;
+    }
+
+    public static DriveFeedforward get() {
+        return current;
+    }
+
+    /**
+     * Uses <code>gains</code> from now on and saves them for the next startup.
+     */
+    public static void save(DriveFeedforward gains) {
+        current = gains;
+        try (BufferedWriter writer = Files.newBufferedWriter(FILE)) {
+            writer.write("# Measured by CharacterizeDriveCommand");
+            writer.newLine();
+            writer.write("DRIVE_KS_VOLTS=" + gains.ksVolts);
+            writer.newLine();
+            writer.write("DRIVE_KV_VOLTS_PER_MPS=" + gains.kvVoltsPerMps);
+            writer.newLine();
+            writer.write("DRIVE_KA_VOLTS_PER_MPS2=" + gains.kaVoltsPerMps2);
+            writer.newLine();
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not save " + FILE, e.getStackTrace());
+        }
+    }
+
+    /**
+     * Uses the gains saved by the last characterization, or the estimates if
+     * there are none or they cannot be read.
+     */
+    public static void load() {
+        current = read();
+    }
+
+    private static DriveFeedforward read() {
+        if (!Files.exists(FILE)) {
+            return ESTIMATE;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(FILE)) {
+            properties.load(reader);
+            return new DriveFeedforward(
+                    Double.parseDouble(properties.getProperty("DRIVE_KS_VOLTS").trim()),
+                    Double.parseDouble(properties.getProperty("DRIVE_KV_VOLTS_PER_MPS").trim()),
+                    Double.parseDouble(properties.getProperty("DRIVE_KA_VOLTS_PER_MPS2").trim()));
+        } catch (IOException | RuntimeException e) {
+            // Missing keys and bad numbers both land here; a partial set of gains is no use
+            DriverStation.reportWarning("Could not read " + FILE + ", using the estimated feedforward", false);
+            return ESTIMATE;
+        }
+    }
+}
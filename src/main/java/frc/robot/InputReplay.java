@@ -0,0 +1,67 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import frc.lib.ControllerRecording;
+import frc.lib.SteppedRobot;
+
+/**
+ * Desktop entry point that replays a controller recording through the
+ * robot's own {@link edu.wpi.first.wpilibj.TimedRobot} loop in HAL
+ * simulation, so mode changes run the mode init and periodic methods and the
+ * fast periodic runs between loops, just as on the field. Each row holds for
+ * its recorded time to the next, rounded to whole loops, so debounces and
+ * timeouts see the same timing as the match, while loops run back to back,
+ * faster than real time.
+ *
+ * <p>Run with <code>./gradlew replayInputs -Precording=logs/input-....rec</code>
+ */
+public final class InputReplay {
+    private InputReplay() {}
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        if (args.length != 1 || args[0].isEmpty()) {
+            System.err.println("Usage: InputReplay <recording>");
+            System.exit(1);
+        }
+        ControllerRecording recording = ControllerRecording.load(Path.of(args[0]));
+        if (recording.size() == 0) {
+            System.err.println(args[0] + " has no rows");
+            System.exit(1);
+        }
+
+        SteppedRobot<Robot> sim = SteppedRobot.start(Robot::new);
+        sim.getRobot().getRobotContainer().replayInputs(recording);
+
+        long wallStart = System.nanoTime();
+        long first = -1;
+        long timestamp = -1;
+        int loops = 0;
+        while (recording.advance()) {
+            timestamp = recording.getTimestampMicros();
+            if (first < 0) {
+                first = timestamp;
+            }
+            int mode = recording.getMode();
+            DriverStationSim.setEnabled(mode != ControllerRecording.MODE_DISABLED);
+            DriverStationSim.setAutonomous(mode == ControllerRecording.MODE_AUTONOMOUS);
+            DriverStationSim.setTest(mode == ControllerRecording.MODE_TEST);
+            DriverStationSim.notifyNewData();
+
+            // The controller applies the current row on every loop until the cursor moves on
+            long next = recording.getNextTimestampMicros();
+            int periods = (int) Math.max(1, Math.round((next - timestamp) / 1e6 / Constants.LOOP_PERIOD));
+            sim.step(periods * Constants.LOOP_PERIOD);
+            loops += periods;
+        }
+        sim.close();
+
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+        double simulatedSeconds = (timestamp - first) / 1e6;
+        System.out.printf("Replayed %d rows in %d loops covering %.1f s in %.2f s (%.0fx real time)%n",
+                recording.size(), loops, simulatedSeconds, wallSeconds, simulatedSeconds / wallSeconds);
+        System.exit(0);
+    }
+}
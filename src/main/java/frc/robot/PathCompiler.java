@@ -0,0 +1,73 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.constraint.DifferentialDriveVoltageConstraint;
+import frc.lib.CompiledTrajectory;
+
+/**
+ * Build-time entry point that generates the autonomous paths and writes them
+ * as {@link CompiledTrajectory} files, one per path, so the robot never runs
+ * the generator. Each file shows up in the autonomous chooser under its name.
+ *
+ * <p>Run with <code>./gradlew compilePaths</code>, which deploy and
+ * simulateJava depend on. It writes to build/paths, which is deployed to
+ * deploy/paths on the robot.
+ */
+public final class PathCompiler {
+    private PathCompiler() {}
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PathCompiler <output directory>");
+            System.exit(1);
+        }
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*" + CompiledTrajectory.EXTENSION)) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+
+        // Paths start at the origin facing downfield; the follower resets odometry to the start
+        compile(directory, "Taxi", config(false),
+                new Pose2d(), List.of(), new Pose2d(2.5, 0, new Rotation2d()));
+        compile(directory, "Taxi Curve Left", config(false),
+                new Pose2d(), List.of(new Translation2d(1.5, 0.3)), new Pose2d(3.0, 1.0, new Rotation2d()));
+        compile(directory, "Back Up", config(true),
+                new Pose2d(), List.of(), new Pose2d(-1.5, 0, new Rotation2d()));
+    }
+
+    private static TrajectoryConfig config(boolean reversed) {
+        DifferentialDriveKinematics kinematics = new DifferentialDriveKinematics(Constants.DRIVE_TRACK_WIDTH_METERS);
+        SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(Constants.DRIVE_KS_VOLTS,
+                Constants.DRIVE_KV_VOLTS_PER_MPS, Constants.DRIVE_KA_VOLTS_PER_MPS2);
+        return new TrajectoryConfig(Constants.AUTO_MAX_VELOCITY_MPS, Constants.AUTO_MAX_ACCELERATION_MPS2)
+                .setKinematics(kinematics)
+                .addConstraint(new DifferentialDriveVoltageConstraint(feedforward, kinematics,
+                        Constants.AUTO_MAX_VOLTAGE))
+                .setReversed(reversed);
+    }
+
+    private static void compile(Path directory, String name, TrajectoryConfig config, Pose2d start,
+            List<Translation2d> interior, Pose2d end) throws IOException {
+        Trajectory trajectory = TrajectoryGenerator.generateTrajectory(start, interior, end, config);
+        Path file = directory.resolve(name + CompiledTrajectory.EXTENSION);
+        CompiledTrajectory.write(trajectory, file);
+        System.out.printf("%-24s %5d samples %6.2f s %8d bytes%n", name, trajectory.getStates().size(),
+                trajectory.getTotalTimeSeconds(), Files.size(file));
+    }
+}
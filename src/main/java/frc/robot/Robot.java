@@ -4,9 +4,16 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.BinaryRingLog;
+import frc.lib.LoopProfiler;
+import frc.lib.ProfiledSection;
+import frc.lib.StartupTimer;
+import frc.lib.ThreadPlacement;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -18,15 +25,76 @@ public class Robot extends TimedRobot {
   private Command m_autonomousCommand;
   private RobotContainer m_robotContainer;
 
+  private final ProfiledSection m_loopProfile =
+      LoopProfiler.section("Robot.robotPeriodic", Constants.LOOP_PERIOD);
+  // How late each loop starts against the period, as a histogram; overruns are late starts
+  private final ProfiledSection m_jitterProfile =
+      LoopProfiler.section("Robot.loopStartJitter", Constants.LOOP_JITTER_BUDGET);
+  private long m_nextLoopMicros;
+  private final ProfiledSection m_schedulerProfile = LoopProfiler.section("CommandScheduler.run");
+  private final ProfiledSection m_inputsProfile = LoopProfiler.section("RobotContainer.updateInputs");
+  private final ProfiledSection m_telemetryProfile =
+      LoopProfiler.section("RobotContainer.logTelemetry");
+
+  public Robot() {
+    super(Constants.LOOP_PERIOD);
+    // TimedRobot schedules loop k at its construction time plus k periods; this is within
+    // microseconds of that start time
+    m_nextLoopMicros = RobotController.getFPGATime() + loopPeriodMicros();
+  }
+
   /**
    * This function is run when the robot is first started up and should be used for any
    * initialization code.
    */
   @Override
   public void robotInit() {
+    StartupTimer.mark("robotInit");
+    // Placement before anything starts threads. The HAL notifier thread wakes every notifier,
+    // so it has to outrank any real-time thread it wakes.
+    new ThreadPlacement(Constants.ROBOT_THREAD_CPU, Constants.ROBOT_THREAD_REAL_TIME,
+        Constants.ROBOT_THREAD_PRIORITY).applyToCurrentThread("Robot");
+    if (Constants.ROBOT_THREAD_REAL_TIME || Constants.ODOMETRY_THREAD_REAL_TIME) {
+      Notifier.setHALThreadPriority(true,
+          Math.max(Constants.ROBOT_THREAD_PRIORITY, Constants.ODOMETRY_THREAD_PRIORITY) + 1);
+    }
+    BinaryRingLog.setWriterPlacement(new ThreadPlacement(Constants.LOG_WRITER_CPU, false, 0));
+    // LiveWindow stops the command scheduler, and test mode runs a command
+    enableLiveWindowInTest(false);
+
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+    StartupTimer.mark("RobotContainer constructed");
+
+    // The fast drive loop runs on this same thread between scheduler passes, so it shares
+    // controller and command state with the scheduler without any locking.
+    if (Constants.FAST_DRIVE_LOOP) {
+      addPeriodic(m_robotContainer::fastPeriodic, Constants.FAST_DRIVE_PERIOD);
+    }
+    StartupTimer.mark("robotInit done");
+  }
+
+  /**
+   * Records how late this loop started against its slot in TimedRobot's schedule before running
+   * it, so a slow robotInit or a late first loop counts too. A late loop moves the schedule past
+   * any slots it missed, so an overrun is counted once rather than against every loop after it.
+   */
+  @Override
+  protected void loopFunc() {
+    long now = RobotController.getFPGATime();
+    long period = loopPeriodMicros();
+    m_jitterProfile.record(Math.max(0, now - m_nextLoopMicros) * 1_000);
+    m_nextLoopMicros += period * (Math.max(0, now - m_nextLoopMicros) / period + 1);
+    super.loopFunc();
+  }
+
+  private static long loopPeriodMicros() {
+    return (long) (Constants.LOOP_PERIOD * 1e6);
+  }
+
+  RobotContainer getRobotContainer() {
+    return m_robotContainer;
   }
 
   /**
@@ -38,16 +106,35 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    StartupTimer.finish();
+    long loopStart = m_loopProfile.start();
+
+    // Capture controller input once so every command and trigger sees the same values.
+    long inputsStart = m_inputsProfile.start();
+    m_robotContainer.updateInputs();
+    m_inputsProfile.stop(inputsStart);
+
     // Runs the Scheduler.  This is responsible for polling buttons, adding newly-scheduled
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
+    long schedulerStart = m_schedulerProfile.start();
     CommandScheduler.getInstance().run();
+    m_schedulerProfile.stop(schedulerStart);
+
+    long telemetryStart = m_telemetryProfile.start();
+    m_robotContainer.logTelemetry();
+    m_telemetryProfile.stop(telemetryStart);
+
+    m_loopProfile.stop(loopStart);
+    LoopProfiler.publish();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
   @Override
-  public void disabledInit() {}
+  public void disabledInit() {
+    m_robotContainer.flushLogs();
+  }
 
   @Override
   public void disabledPeriodic() {}
@@ -55,7 +142,7 @@ public class Robot extends TimedRobot {
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
   public void autonomousInit() {
-   
+    m_autonomousCommand = m_robotContainer.getAutonomousCommand();
 
     // schedule the autonomous command (example)
     if (m_autonomousCommand != null) {
@@ -86,8 +173,10 @@ public class Robot extends TimedRobot {
 
   @Override
   public void testInit() {
-    // Cancels all running commands at the start of test mode.
+    // Cancels all running commands at the start of test mode, then characterizes the drivetrain.
+    // Disabling ends the routine early without saving anything.
     CommandScheduler.getInstance().cancelAll();
+    m_robotContainer.getTestCommand().schedule();
   }
 
   /** This function is called periodically during test mode. */
@@ -100,5 +189,7 @@ public class Robot extends TimedRobot {
 
   /** This function is called periodically whilst in simulation. */
   @Override
-  public void simulationPeriodic() {}
+  public void simulationPeriodic() {
+    m_robotContainer.simulationPeriodic();
+  }
 }
@@ -4,11 +4,40 @@
 
 package frc.robot;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.BinaryRingLog;
+import frc.lib.CanBusMonitor;
+import frc.lib.CompiledTrajectory;
+import frc.lib.ControllerRecording;
+import frc.lib.AxisCurve;
+import frc.lib.DashboardTelemetry;
 import frc.lib.DTXboxController;
+import frc.lib.LoopProfiler;
+import frc.lib.PowerGovernor;
+import frc.lib.ProfiledSection;
+import frc.lib.RumblePattern;
+import frc.lib.ShapingProfile;
+import frc.robot.commands.BurstFireCommand;
+import frc.robot.commands.BurstFireCommand.FireMode;
+import frc.robot.commands.CharacterizeDriveCommand;
 import frc.robot.commands.DriveCommand;
-import frc.robot.commands.FeederCommand;
+import frc.robot.commands.FollowTrajectoryCommand;
 import frc.robot.commands.ShooterCommand;
 import frc.robot.subsystems.DriveTrain;
 import frc.robot.subsystems.FrisbeeFlinger;
@@ -31,18 +60,215 @@ public class RobotContainer {
     // Replace with CommandPS4Controller or CommandJoystick if needed
     private final DTXboxController controller = new DTXboxController(0);
 
+    private DriveCommand driveCommand;
+
+    private BurstFireCommand burstFireCommand;
+
+    private CharacterizeDriveCommand characterizeCommand;
+
+    private final SendableChooser<Command> autonomousChooser = new SendableChooser<>();
+
+    private TelemetryLogger telemetryLogger;
+
+    private final CanBusMonitor canBusMonitor = new CanBusMonitor();
+
+    private final PowerDistribution powerDistribution = new PowerDistribution();
+
+    // Budgets against the panel's total, so the compressor and roboRIO come out of it too
+    private final PowerGovernor powerGovernor = new PowerGovernor(Constants.POWER_FLOOR_VOLTS,
+            Constants.POWER_NOMINAL_RESISTANCE_OHMS, Constants.POWER_MIN_SCALE, Constants.POWER_RECOVERY_PER_SECOND,
+            powerDistribution::getTotalCurrent);
+
+    private volatile BinaryRingLog inputRecording;
+
+    private final ProfiledSection fastProfile = LoopProfiler.section("RobotContainer.fastPeriodic");
+
+    private Tunables shapingTunables;
+    private ShapingProfile kiddieProfile;
+    private ShapingProfile fullSpeedProfile;
+
     /**
      * The container for the robot. Contains subsystems, OI devices, and commands.
      */
     public RobotContainer() {
+        // Measured gains before anything that drives with them
+        DriveFeedforward.load();
+
         // Configure the shooter and feeder
         frisbeeFlinger = new FrisbeeFlinger(4, 6);
 
         // Configure the trigger bindings
         driveTrain = new DriveTrain(5, 10);
-        driveTrain.setDefaultCommand(new DriveCommand(driveTrain, controller));
+
+        // Share the battery between mechanisms, feeder first so a disc is never left half fed
+        PowerGovernor.Mechanism feederPower = powerGovernor.register("Feeder", 0,
+                Constants.FEEDER_CURRENT_BUDGET_AMPS, frisbeeFlinger::getFeederSupplyCurrent);
+        PowerGovernor.Mechanism drivePower = powerGovernor.register("Drive", 1,
+                Constants.DRIVE_CURRENT_BUDGET_AMPS, driveTrain::getSupplyCurrent);
+        PowerGovernor.Mechanism shooterPower = powerGovernor.register("Shooter", 2,
+                Constants.SHOOTER_CURRENT_BUDGET_AMPS, frisbeeFlinger::getShooterSupplyCurrent);
+        frisbeeFlinger.setPowerLimits(shooterPower, feederPower);
+
+        buildShapingProfiles(Tunables.get());
+        controller.setShapingProfile(kiddieProfile);
+        driveCommand = new DriveCommand(driveTrain, controller, Constants.FAST_DRIVE_LOOP, drivePower);
+        driveTrain.setDefaultCommand(driveCommand);
+        characterizeCommand = new CharacterizeDriveCommand(driveTrain);
         configureBindings();
+        configureAutonomous();
+
+        telemetryLogger = new TelemetryLogger(controller, driveTrain, frisbeeFlinger);
+        SmartDashboard.putData("Telemetry Log", telemetryLogger);
+
+        if (Constants.RECORD_INPUTS) {
+            Path file = Filesystem.getOperatingDirectory().toPath()
+                                  .resolve("logs")
+                                  .resolve("input-" + System.currentTimeMillis() + ".rec");
+            try {
+                inputRecording = ControllerRecording.create(file);
+            } catch (IOException e) {
+                DriverStation.reportError("Input recording disabled, could not open " + file, e.getStackTrace());
+            }
+        }
+
+        // Robot code is stopped with a signal on redeploy and restart, and the logs close with it
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeLogs, "Close logs"));
+
+    }
 
+    FrisbeeFlinger getFrisbeeFlinger() {
+        return frisbeeFlinger;
+    }
+
+    DriveTrain getDriveTrain() {
+        return driveTrain;
+    }
+
+    BurstFireCommand getBurstFireCommand() {
+        return burstFireCommand;
+    }
+
+    /**
+     * Drives from the fast periodic instead of the scheduler, or back. The
+     * fast periodic must already be registered.
+     */
+    void setFastDriveLoop(boolean fastLoop) {
+        driveCommand.setFastLoop(fastLoop);
+    }
+
+    /**
+     * @return the routine picked on the dashboard, or null to sit still
+     */
+    public Command getAutonomousCommand() {
+        return autonomousChooser.getSelected();
+    }
+
+    /**
+     * @return the drivetrain characterization routine run in test mode
+     */
+    public Command getTestCommand() {
+        return characterizeCommand;
+    }
+
+    /**
+     * Captures this loop's operator input and power limits. Must run before
+     * the scheduler so that commands and trigger bindings all read the same
+     * snapshot.
+     */
+    public void updateInputs() {
+        Tunables tunables = Tunables.get();
+        if (tunables != shapingTunables) {
+            buildShapingProfiles(tunables);
+        }
+        controller.update();
+        powerGovernor.update();
+        if (inputRecording != null) {
+            ControllerRecording.record(inputRecording, RobotController.getFPGATime(), currentMode(), controller);
+        }
+    }
+
+    /**
+     * Switches the controller to a recorded input stream and stops recording.
+     */
+    public void replayInputs(ControllerRecording recording) {
+        if (inputRecording != null) {
+            try {
+                inputRecording.close();
+            } catch (IOException e) {
+                DriverStation.reportWarning("Could not close input recording", e.getStackTrace());
+            }
+            inputRecording = null;
+        }
+        controller.setReplay(recording);
+    }
+
+    /**
+     * Records this loop's inputs and outputs and the CAN bus health, and sends
+     * whatever dashboard values are due. Run after the scheduler so the
+     * commanded outputs are the ones just written.
+     */
+    public void logTelemetry() {
+        telemetryLogger.sample();
+        canBusMonitor.periodic();
+        DashboardTelemetry.publish();
+    }
+
+    /**
+     * Has the logs forced to storage, so everything up to the end of a match
+     * survives the robot being switched off.
+     */
+    public void flushLogs() {
+        telemetryLogger.flush();
+        BinaryRingLog recording = inputRecording;
+        if (recording != null) {
+            recording.force();
+        }
+    }
+
+    private void closeLogs() {
+        telemetryLogger.close();
+        BinaryRingLog recording = inputRecording;
+        if (recording != null) {
+            try {
+                recording.close();
+            } catch (IOException e) {
+                DriverStation.reportWarning("Could not close input recording", e.getStackTrace());
+            }
+        }
+    }
+
+    /**
+     * Sags the simulated battery by the current the subsystem models drew
+     * this loop. Same model as BatterySim, without its varargs array.
+     */
+    public void simulationPeriodic() {
+        double current = driveTrain.getSimulatedCurrentDraw() + frisbeeFlinger.getSimulatedCurrentDraw();
+        double voltage = Constants.SIM_BATTERY_VOLTAGE - current * Constants.SIM_BATTERY_RESISTANCE_OHMS;
+        RoboRioSim.setVInVoltage(Math.max(0, voltage));
+    }
+
+    /**
+     * Runs at {@link Constants#FAST_DRIVE_PERIOD} on the robot thread, between
+     * scheduler passes. Re-reads the drive axes and, in fast mode, drives.
+     * The rest of the Driver Station state is only refreshed by the robot
+     * loop.
+     */
+    public void fastPeriodic() {
+        long start = fastProfile.start();
+        controller.updateAxes();
+        driveCommand.fastExecute();
+        fastProfile.stop(start);
+    }
+
+    private static int currentMode() {
+        if (DriverStation.isDisabled()) {
+            return ControllerRecording.MODE_DISABLED;
+        } else if (DriverStation.isAutonomous()) {
+            return ControllerRecording.MODE_AUTONOMOUS;
+        } else if (DriverStation.isTest()) {
+            return ControllerRecording.MODE_TEST;
+        }
+        return ControllerRecording.MODE_TELEOP;
     }
 
     /**
@@ -60,10 +286,98 @@ public class RobotContainer {
      * joysticks}.
      */
     private void configureBindings() {
-        controller.rightTrigger.whileTrue(new ShooterCommand(frisbeeFlinger));
-        controller.rightTrigger.debounce(2)
-                               .and(controller.leftTrigger)
-                               .whileTrue(new FeederCommand(frisbeeFlinger));
+        burstFireCommand = new BurstFireCommand(frisbeeFlinger);
+
+        // Right trigger spins up, left trigger fires; the sequencer waits for the wheel itself
+        controller.rightTrigger.whileTrue(new ShooterCommand(frisbeeFlinger, controller::getInputChangedMicros));
+        controller.rightTrigger.and(controller.leftTrigger)
+                               .whileTrue(burstFireCommand);
+
+        // Fire mode select, confirmed by one, three or one long rumble
+        controller.aButton.onTrue(new InstantCommand(() -> selectFireMode(FireMode.SINGLE)));
+        controller.bButton.onTrue(new InstantCommand(() -> selectFireMode(FireMode.BURST)));
+        controller.yButton.onTrue(new InstantCommand(() -> selectFireMode(FireMode.FULL_AUTO)));
+
+        // Holding both bumpers unlocks full speed, and letting go goes back to kiddie drive
+        Command fullSpeed = new InstantCommand(() -> controller.setShapingProfile(fullSpeedProfile));
+        Command kiddie = new InstantCommand(() -> controller.setShapingProfile(kiddieProfile));
+        controller.leftBumper.and(controller.rightBumper)
+                             .onTrue(fullSpeed.ignoringDisable(true))
+                             .onFalse(kiddie.ignoringDisable(true));
+
+        // Drive mode toggle, two rumbles for velocity control and one for open loop
+        controller.startButton.onTrue(new InstantCommand(this::toggleDriveMode));
+    }
+
+    /**
+     * Offers one routine per compiled path in deploy/paths, or in build/paths
+     * in simulation, where compilePaths writes them. Each file is mapped in
+     * one go; nothing is generated or parsed here.
+     */
+    private void configureAutonomous() {
+        autonomousChooser.setDefaultOption("Do Nothing", null);
+        Path directory = RobotBase.isSimulation()
+                ? Filesystem.getOperatingDirectory().toPath().resolve("build").resolve("paths")
+                : Filesystem.getDeployDirectory().toPath().resolve("paths");
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + CompiledTrajectory.EXTENSION)) {
+                for (Path file : files) {
+                    CompiledTrajectory trajectory = CompiledTrajectory.load(file);
+                    autonomousChooser.addOption(trajectory.getName(),
+                            new FollowTrajectoryCommand(driveTrain, trajectory));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                DriverStation.reportError("Could not load autonomous paths from " + directory, e.getStackTrace());
+            }
+        } else {
+            DriverStation.reportWarning("No autonomous paths in " + directory + ", run compilePaths", false);
+        }
+        SmartDashboard.putData("Autonomous", autonomousChooser);
+    }
+
+    /**
+     * Compiles the kiddie and full speed stick profiles from the tunables, and
+     * swaps the new ones in if either was in use. Only runs again when a
+     * tunable changes.
+     */
+    private void buildShapingProfiles(Tunables tunables) {
+        boolean fullSpeed = fullSpeedProfile != null && controller.getShapingProfile() == fullSpeedProfile;
+        // Fourth power: the squared stick, squared again as arcadeDrive used to, so the drive
+        // responds as it always has now that the drivetrain takes the sticks as they are
+        kiddieProfile = new ShapingProfile("Kiddie")
+                .with(DTXboxController.Axis.LEFT_Y, new AxisCurve().power(4)
+                        .clamp(tunables.maxKiddieDriveVelocityForwards)
+                        .slewRate(Constants.KIDDIE_DRIVE_SLEW_RATE))
+                .with(DTXboxController.Axis.RIGHT_X, new AxisCurve().power(4)
+                        .clamp(tunables.maxKiddieDriveVelocityRotation)
+                        .slewRate(Constants.KIDDIE_DRIVE_SLEW_RATE));
+        fullSpeedProfile = new ShapingProfile("Full Speed")
+                .with(DTXboxController.Axis.LEFT_Y, new AxisCurve().power(4))
+                .with(DTXboxController.Axis.RIGHT_X, new AxisCurve().power(4));
+        if (shapingTunables != null) {
+            controller.setShapingProfile(fullSpeed ? fullSpeedProfile : kiddieProfile);
+        }
+        shapingTunables = tunables;
+    }
+
+    private void toggleDriveMode() {
+        boolean velocityMode = !driveTrain.isVelocityMode();
+        driveTrain.setVelocityMode(velocityMode);
+        controller.startRumble(RumblePattern.pulses(velocityMode ? 2 : 1, 0.15, 0.1, 0.6));
+    }
 
+    private void selectFireMode(FireMode mode) {
+        burstFireCommand.setMode(mode);
+        switch (mode) {
+            case SINGLE:
+                controller.startRumble(RumblePattern.pulses(1, 0.15, 0.1, 0.6));
+                break;
+            case BURST:
+                controller.startRumble(RumblePattern.pulses(Constants.BURST_SIZE, 0.15, 0.1, 0.6));
+                break;
+            case FULL_AUTO:
+                controller.startRumble(RumblePattern.constant(0.6, 0.6));
+                break;
+        }
     }
 }
@@ -0,0 +1,33 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.lib.StartupTimer;
+
+/**
+ * Desktop entry point that runs robot startup once in HAL simulation, up to
+ * and including the first {@link Robot#robotPeriodic()}, then exits. The
+ * build runs it with <code>-XX:DumpLoadedClassList</code> to get the classes
+ * startup loads, which the roboRIO turns into its class-data-sharing archive.
+ * It also prints the startup timing, for comparing changes on a desktop.
+ *
+ * <p>Run with <code>./gradlew startupClassList</code>
+ */
+public final class StartupProbe {
+    private StartupProbe() {}
+
+    public static void main(String... args) {
+        StartupTimer.start();
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+
+        Robot robot = new Robot();
+        robot.robotInit();
+        robot.robotPeriodic();
+        robot.simulationPeriodic();
+        System.out.println(StartupTimer.getReport());
+        System.exit(0);
+    }
+}
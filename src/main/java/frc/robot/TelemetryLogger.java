@@ -0,0 +1,146 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.lib.BinaryRingLog;
+import frc.lib.DTXboxController;
+import frc.robot.subsystems.DriveTrain;
+import frc.robot.subsystems.FrisbeeFlinger;
+
+/**
+ * Writes one fixed-size record per loop with the operator input, every
+ * commanded output and the current and voltage of each Talon. Sampling only
+ * copies values into the off-heap ring; the file is written by the ring's
+ * background thread, which forces it to storage every second.
+ */
+public class TelemetryLogger implements Sendable {
+    private static final int RING_CAPACITY = 4096;
+
+    private static final String SCHEMA = "timestamp:long,"
+            + "leftX:float,leftY:float,rightX:float,rightY:float,leftTrigger:float,rightTrigger:float,"
+            + "buttons:int,pov:int,"
+            + "driveForward:float,driveRotation:float,"
+            + "leftOutput:float,rightOutput:float,shooterOutput:float,feederOutput:float,"
+            + "leftStator:float,leftSupply:float,leftVoltage:float,"
+            + "rightStator:float,rightSupply:float,rightVoltage:float,"
+            + "shooterStator:float,shooterSupply:float,shooterVoltage:float,"
+            + "feederStator:float,feederSupply:float,feederVoltage:float,"
+            + "battery:float";
+
+    private final DTXboxController controller;
+    private final DriveTrain       driveTrain;
+    private final FrisbeeFlinger   frisbeeFlinger;
+    private final WPI_TalonSRX[]   talons;
+    private final BinaryRingLog    log;
+
+    public TelemetryLogger(DTXboxController controller, DriveTrain driveTrain, FrisbeeFlinger frisbeeFlinger) {
+        this.controller = controller;
+        this.driveTrain = driveTrain;
+        this.frisbeeFlinger = frisbeeFlinger;
+        this.talons = new WPI_TalonSRX[] {
+            driveTrain.getLeftOutput().getMotor(),
+            driveTrain.getRightOutput().getMotor(),
+            frisbeeFlinger.getShooterOutput().getMotor(),
+            frisbeeFlinger.getFeederOutput().getMotor()
+        };
+
+        Path directory = Filesystem.getOperatingDirectory().toPath().resolve("logs");
+        BinaryRingLog.deleteOldLogs(directory, "telemetry-*.bin", Constants.TELEMETRY_LOG_KEEP_FILES,
+                Constants.TELEMETRY_LOG_KEEP_BYTES);
+        Path file = directory.resolve("telemetry-" + System.currentTimeMillis() + ".bin");
+        BinaryRingLog opened = null;
+        try {
+            opened = new BinaryRingLog(file, SCHEMA, RING_CAPACITY);
+        } catch (IOException e) {
+            DriverStation.reportError("Telemetry log disabled, could not open " + file, e.getStackTrace());
+        }
+        this.log = opened;
+    }
+
+    /**
+     * Records this loop. Never blocks; if the writer is behind, the record is
+     * dropped and counted.
+     */
+    public void sample() {
+        if (log == null || !log.begin()) {
+            return;
+        }
+        log.putLong(RobotController.getFPGATime());
+
+        log.putFloat((float) controller.getLeftStickX());
+        log.putFloat((float) controller.getLeftStickY());
+        log.putFloat((float) controller.getRightStickX());
+        log.putFloat((float) controller.getRightStickY());
+        log.putFloat((float) controller.getLeftTrigger());
+        log.putFloat((float) controller.getRightTrigger());
+        log.putInt(controller.getButtons());
+        log.putInt(controller.getDpad());
+
+        log.putFloat((float) driveTrain.getForwardCommand());
+        log.putFloat((float) driveTrain.getRotationCommand());
+        log.putFloat((float) driveTrain.getLeftOutput().get());
+        log.putFloat((float) driveTrain.getRightOutput().get());
+        log.putFloat((float) frisbeeFlinger.getShooterOutput().get());
+        log.putFloat((float) frisbeeFlinger.getFeederOutput().get());
+
+        for (WPI_TalonSRX talon : talons) {
+            log.putFloat((float) talon.getStatorCurrent());
+            log.putFloat((float) talon.getSupplyCurrent());
+            log.putFloat((float) talon.getMotorOutputVoltage());
+        }
+        log.putFloat((float) RobotController.getBatteryVoltage());
+        log.commit();
+    }
+
+    /**
+     * Has the writer force everything recorded so far to storage soon,
+     * without waiting for it.
+     */
+    public void flush() {
+        if (log != null) {
+            log.force();
+        }
+    }
+
+    /**
+     * Writes out and forces everything recorded, and closes the file. Safe to
+     * call more than once.
+     */
+    public void close() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not close telemetry log", e.getStackTrace());
+        }
+    }
+
+    public long getDroppedRecords() {
+        return log == null ? 0 : log.getDroppedRecords();
+    }
+
+    public long getWrittenRecords() {
+        return log == null ? 0 : log.getWrittenRecords();
+    }
+
+    public long getBufferedRecords() {
+        return log == null ? 0 : log.getBufferedRecords();
+    }
+
+    @Override
+    public void initSendable(SendableBuilder builder) {
+        builder.addDoubleProperty("Written Records", this::getWrittenRecords, null);
+        builder.addDoubleProperty("Dropped Records", this::getDroppedRecords, null);
+        builder.addDoubleProperty("Buffered Records", this::getBufferedRecords, null);
+    }
+}
@@ -0,0 +1,67 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.lib.TunableSet;
+
+/**
+ * The {@link Constants} that can be changed without a redeploy. Defaults come
+ * from tunables.properties in the deploy directory, and from the constants for
+ * keys missing there. Values are edited under the Tunables table in
+ * NetworkTables and saved to tunables.properties in the operating directory,
+ * like {@link DriveFeedforward}, so a deploy does not overwrite them; those
+ * are loaded over the defaults at startup. Each value has a range it is
+ * clamped into, wherever it comes from.
+ *
+ * <p>Call {@link #get()} once at the top of a method and read the fields from
+ * the returned snapshot. A change shows up in the next snapshot.
+ */
+public final class Tunables {
+    private static final TunableSet<Tunables> SET = new TunableSet<>("Tunables",
+            Filesystem.getDeployDirectory().toPath().resolve("tunables.properties"),
+            Filesystem.getOperatingDirectory().toPath().resolve("tunables.properties"));
+
+    // However the kiddie caps are tuned, kiddie drive stays well short of full speed, and no
+    // faster than the 0.49 the kiddie output has always been held to
+    private static final double MAX_KIDDIE_CAP = 0.49;
+    // Below the shooter's free speed, so the velocity loop can still hold the target under load
+    private static final double MAX_SHOOTER_RPM = 5000;
+
+    private static final int FEEDER_SPEED = SET.add("FEEDER_SPEED", Constants.FEEDER_SPEED, 0, 1);
+    private static final int MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS = SET.add("MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS",
+            Constants.MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS, 0, MAX_KIDDIE_CAP);
+    private static final int MAX_KIDDIE_DRIVE_VELOCITY_ROTATION = SET.add("MAX_KIDDIE_DRIVE_VELOCITY_ROTATION",
+            Constants.MAX_KIDDIE_DRIVE_VELOCITY_ROTATION, 0, MAX_KIDDIE_CAP);
+    private static final int SHOOTER_TARGET_RPM =
+            SET.add("SHOOTER_TARGET_RPM", Constants.SHOOTER_TARGET_RPM, 0, MAX_SHOOTER_RPM);
+    private static final int SHOOTER_AT_SPEED_TOLERANCE_RPM =
+            SET.add("SHOOTER_AT_SPEED_TOLERANCE_RPM", Constants.SHOOTER_AT_SPEED_TOLERANCE_RPM, 10, 1000);
+    private static final int SHOT_DETECT_DROP_RPM =
+            SET.add("SHOT_DETECT_DROP_RPM", Constants.SHOT_DETECT_DROP_RPM, 50, 2000);
+
+    static {
+        SET.start(Tunables::new);
+    }
+
+    public final double feederSpeed;
+    public final double maxKiddieDriveVelocityForwards;
+    public final double maxKiddieDriveVelocityRotation;
+    public final double shooterTargetRpm;
+    public final double shooterAtSpeedToleranceRpm;
+    public final double shotDetectDropRpm;
+
+    private Tunables(double[] values) {
+        this.feederSpeed = values[FEEDER_SPEED];
+        this.maxKiddieDriveVelocityForwards = values[MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS];
+        this.maxKiddieDriveVelocityRotation = values[MAX_KIDDIE_DRIVE_VELOCITY_ROTATION];
+        this.shooterTargetRpm = values[SHOOTER_TARGET_RPM];
+        this.shooterAtSpeedToleranceRpm = values[SHOOTER_AT_SPEED_TOLERANCE_RPM];
+        this.shotDetectDropRpm = values[SHOT_DETECT_DROP_RPM];
+    }
+
+    /**
+     * @return the current values, swapped in whole whenever one changes
+     */
+    public static Tunables get() {
+        return SET.get();
+    }
+}
@@ -0,0 +1,170 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.Debouncer.DebounceType;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.DashboardTelemetry;
+import frc.lib.LoopProfiler;
+import frc.lib.ProfiledSection;
+import frc.robot.Constants;
+import frc.robot.Tunables;
+import frc.robot.subsystems.FrisbeeFlinger;
+
+/**
+ * Feeds one disc at a time. The feeder only runs while the flywheel is in
+ * its speed band and stops as soon as the speed dip of a disc leaving is
+ * seen, then waits for the wheel to recover before feeding the next.
+ *
+ * <p>Requires the flinger, so nothing else writes the feeder while it runs.
+ * {@link ShooterCommand} requires nothing and keeps the wheel spinning
+ * alongside it.
+ */
+public class BurstFireCommand extends CommandBase {
+    public enum FireMode {
+        SINGLE,
+        BURST,
+        FULL_AUTO
+    }
+
+    private enum State {
+        RECOVERING,
+        FEEDING,
+        DONE
+    }
+
+    private FrisbeeFlinger flinger;
+    private FireMode mode = FireMode.FULL_AUTO;
+    private State state;
+    private int shotsThisVolley;
+    private double feedStart;
+    private double lastShotTime;
+    private final Debouncer atSpeed = new Debouncer(Constants.SHOOTER_AT_SPEED_DEBOUNCE, DebounceType.kRising);
+
+    private double volleyFirstShotTime;
+    private long totalShots;
+    private double shotsPerMinute;
+    private long recoveries;
+    private double recoveryLast;
+    private double recoveryTotal;
+    private double recoveryMin;
+    private double recoveryMax;
+    private final ProfiledSection profile = LoopProfiler.section("BurstFireCommand.execute");
+
+    public BurstFireCommand(FrisbeeFlinger flinger) {
+        this.flinger = flinger;
+        addRequirements(flinger);
+
+        DashboardTelemetry.addInteger("BurstFire/Shots", Constants.TELEMETRY_PERIOD, () -> totalShots);
+        // Rate within a volley, so it reflects sustained fire rather than time between volleys
+        DashboardTelemetry.addDouble("BurstFire/Shots per min", Constants.TELEMETRY_PERIOD, 1, () -> shotsPerMinute);
+        DashboardTelemetry.addDouble("BurstFire/Recovery last s", Constants.TELEMETRY_PERIOD, 0.005,
+                () -> recoveryLast);
+        DashboardTelemetry.addDouble("BurstFire/Recovery min s", Constants.TELEMETRY_PERIOD, 0.005, () -> recoveryMin);
+        DashboardTelemetry.addDouble("BurstFire/Recovery mean s", Constants.TELEMETRY_PERIOD, 0.005,
+                () -> recoveries == 0 ? 0 : recoveryTotal / recoveries);
+        DashboardTelemetry.addDouble("BurstFire/Recovery max s", Constants.TELEMETRY_PERIOD, 0.005, () -> recoveryMax);
+    }
+
+    public void setMode(FireMode mode) {
+        this.mode = mode;
+    }
+
+    public FireMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return discs seen leaving the shooter since startup
+     */
+    public long getTotalShots() {
+        return totalShots;
+    }
+
+    @Override
+    public void initialize() {
+        state = State.RECOVERING;
+        shotsThisVolley = 0;
+        lastShotTime = -1;
+        // A wheel already in the band still has to hold there for the debounce time
+        atSpeed.calculate(false);
+        flinger.stopFeeder();
+    }
+
+    @Override
+    public void execute() {
+        long start = profile.start();
+        double now = Timer.getFPGATimestamp();
+        // Debounced every loop, so the band has to hold through the recovery rather than one sample
+        boolean shooterAtSpeed = atSpeed.calculate(flinger.isShooterAtSpeed());
+        switch (state) {
+            case RECOVERING:
+                if (shooterAtSpeed) {
+                    if (lastShotTime >= 0) {
+                        recordRecovery(now - lastShotTime);
+                    }
+                    feedStart = now;
+                    state = State.FEEDING;
+                    flinger.spinFeeder();
+                }
+                break;
+            case FEEDING:
+                if (flinger.getShooterRpm() < flinger.getShooterTargetRpm() - Tunables.get().shotDetectDropRpm) {
+                    flinger.stopFeeder();
+                    recordShot(now);
+                    state = volleyComplete() ? State.DONE : State.RECOVERING;
+                } else if (now - feedStart > Constants.FEED_TIMEOUT) {
+                    // Nothing left the shooter: out of discs or jammed
+                    flinger.stopFeeder();
+                    state = State.DONE;
+                } else {
+                    flinger.spinFeeder();
+                }
+                break;
+            case DONE:
+                break;
+        }
+        profile.stop(start);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return state == State.DONE;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        flinger.stopFeeder();
+    }
+
+    private boolean volleyComplete() {
+        switch (mode) {
+            case SINGLE:
+                return shotsThisVolley >= 1;
+            case BURST:
+                return shotsThisVolley >= Constants.BURST_SIZE;
+            default:
+                return false;
+        }
+    }
+
+    private void recordRecovery(double seconds) {
+        recoveryMin = recoveries == 0 ? seconds : Math.min(recoveryMin, seconds);
+        recoveryMax = Math.max(recoveryMax, seconds);
+        recoveries++;
+        recoveryLast = seconds;
+        recoveryTotal += seconds;
+    }
+
+    private void recordShot(double now) {
+        if (shotsThisVolley == 0) {
+            volleyFirstShotTime = now;
+        }
+        shotsThisVolley++;
+        totalShots++;
+        lastShotTime = now;
+        if (shotsThisVolley > 1) {
+            shotsPerMinute = (shotsThisVolley - 1) * 60 / (now - volleyFirstShotTime);
+        }
+    }
+}
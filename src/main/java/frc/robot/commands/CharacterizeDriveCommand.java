@@ -0,0 +1,184 @@
+package frc.robot.commands;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.FeedforwardFit;
+import frc.lib.PoseBuffer;
+import frc.robot.Constants;
+import frc.robot.DriveFeedforward;
+import frc.robot.subsystems.DriveTrain;
+
+/**
+ * Measures the drivetrain's feedforward gains. Drives both sides with the
+ * same voltage through four runs, resting between them: a slow quasistatic
+ * ramp forwards and backwards, where acceleration is negligible and voltage
+ * is all kS and kV, then a step forwards and backwards, which separates kA.
+ * Each side's velocity is logged every loop against the voltage that was
+ * applied while it was measured, and fitted when the last run ends. The two
+ * sides' gains are averaged and saved to {@link DriveFeedforward}, unless
+ * either fit is poor.
+ *
+ * <p>Needs a clear run of {@link Constants#CHARACTERIZE_MAX_DISTANCE_METERS}
+ * in front of and behind the robot. Results are published under the
+ * Characterization table.
+ */
+public class CharacterizeDriveCommand extends CommandBase {
+    private static final String[]  RUN_NAMES  = { "Quasistatic forward", "Quasistatic reverse",
+            "Dynamic forward", "Dynamic reverse" };
+    private static final double[]  DIRECTIONS = { 1, -1, 1, -1 };
+    private static final boolean[] DYNAMIC    = { false, false, true, true };
+
+    private final DriveTrain driveTrain;
+    private final PoseBuffer.Sample pose = new PoseBuffer.Sample();
+    private final FeedforwardFit leftFit;
+    private final FeedforwardFit rightFit;
+
+    private int run;
+    private boolean resting;
+    private double runStartTime;
+    private double startX;
+    private double startY;
+    private long lastSampleMicros;
+    // Voltage sent last loop, which the pose read this loop is the response to
+    private double appliedVolts;
+
+    private final StringPublisher statePublisher;
+    private final DoublePublisher[] leftPublishers;
+    private final DoublePublisher[] rightPublishers;
+
+    public CharacterizeDriveCommand(DriveTrain driveTrain) {
+        this.driveTrain = driveTrain;
+        // One sample per loop for as long as every run can last
+        int capacity = (int) Math.ceil(RUN_NAMES.length * Constants.CHARACTERIZE_RUN_SECONDS / Constants.LOOP_PERIOD);
+        leftFit = new FeedforwardFit(capacity, Constants.CHARACTERIZE_MIN_VELOCITY_MPS);
+        rightFit = new FeedforwardFit(capacity, Constants.CHARACTERIZE_MIN_VELOCITY_MPS);
+        addRequirements(driveTrain);
+
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("Characterization");
+        statePublisher = table.getStringTopic("State").publish();
+        statePublisher.set("Idle");
+        leftPublishers = resultPublishers(table, "Left ");
+        rightPublishers = resultPublishers(table, "Right ");
+    }
+
+    @Override
+    public void initialize() {
+        leftFit.clear();
+        rightFit.clear();
+        run = 0;
+        resting = true;
+        runStartTime = Timer.getFPGATimestamp();
+        lastSampleMicros = 0;
+        appliedVolts = 0;
+        statePublisher.set("Resting");
+    }
+
+    @Override
+    public void execute() {
+        double now = Timer.getFPGATimestamp();
+        double elapsed = now - runStartTime;
+        driveTrain.getPose(pose);
+
+        if (resting) {
+            driveTrain.setWheelVoltages(0, 0);
+            appliedVolts = 0;
+            if (elapsed >= Constants.CHARACTERIZE_REST_SECONDS) {
+                resting = false;
+                runStartTime = now;
+                startX = pose.x;
+                startY = pose.y;
+                leftFit.startRun();
+                rightFit.startRun();
+                statePublisher.set(RUN_NAMES[run]);
+            }
+            return;
+        }
+
+        // The pose was sampled while last loop's voltage was applied, so it is logged against
+        // that. Odometry runs on its own thread; a sample it has not replaced since last loop
+        // adds nothing.
+        if (pose.timestampMicros != lastSampleMicros) {
+            lastSampleMicros = pose.timestampMicros;
+            double time = pose.timestampMicros * 1e-6;
+            leftFit.add(time, appliedVolts, pose.leftVelocity);
+            rightFit.add(time, appliedVolts, pose.rightVelocity);
+        }
+
+        double distance = Math.hypot(pose.x - startX, pose.y - startY);
+        if (elapsed >= Constants.CHARACTERIZE_RUN_SECONDS
+                || distance >= Constants.CHARACTERIZE_MAX_DISTANCE_METERS) {
+            driveTrain.setWheelVoltages(0, 0);
+            appliedVolts = 0;
+            run++;
+            resting = true;
+            runStartTime = now;
+            statePublisher.set("Resting");
+            return;
+        }
+
+        double volts = DIRECTIONS[run] * (DYNAMIC[run]
+                ? Constants.CHARACTERIZE_STEP_VOLTS
+                : Constants.CHARACTERIZE_RAMP_VOLTS_PER_SECOND * elapsed);
+        driveTrain.setWheelVoltages(volts, volts);
+        appliedVolts = volts;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return run == RUN_NAMES.length;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        driveTrain.setWheelVoltages(0, 0);
+        if (interrupted) {
+            statePublisher.set("Interrupted, nothing saved");
+            return;
+        }
+
+        FeedforwardFit.Result left = leftFit.fit();
+        FeedforwardFit.Result right = rightFit.fit();
+        publish(leftPublishers, left);
+        publish(rightPublishers, right);
+        if (left == null || right == null) {
+            statePublisher.set("Fit failed, nothing saved");
+            DriverStation.reportWarning("Drive characterization could not fit the samples", false);
+            return;
+        }
+        double minRSquared = Constants.CHARACTERIZE_MIN_R_SQUARED;
+        if (left.rSquared < minRSquared || right.rSquared < minRSquared || left.kv <= 0 || right.kv <= 0) {
+            statePublisher.set("Poor fit, nothing saved");
+            DriverStation.reportWarning("Drive characterization fit poorly, keeping the previous feedforward", false);
+            return;
+        }
+        DriveFeedforward.save(new DriveFeedforward((left.ks + right.ks) / 2, (left.kv + right.kv) / 2,
+                Math.max(0, (left.ka + right.ka) / 2)));
+        statePublisher.set("Saved");
+    }
+
+    private static DoublePublisher[] resultPublishers(NetworkTable table, String side) {
+        return new DoublePublisher[] {
+            table.getDoubleTopic(side + "kS V").publish(),
+            table.getDoubleTopic(side + "kV V per m per s").publish(),
+            table.getDoubleTopic(side + "kA V per m per s2").publish(),
+            table.getDoubleTopic(side + "R2").publish(),
+            table.getDoubleTopic(side + "Samples").publish(),
+        };
+    }
+
+    private static void publish(DoublePublisher[] publishers, FeedforwardFit.Result result) {
+        if (result == null) {
+            return;
+        }
+        publishers[0].set(result.ks);
+        publishers[1].set(result.kv);
+        publishers[2].set(result.ka);
+        publishers[3].set(result.rSquared);
+        publishers[4].set(result.samples);
+    }
+}
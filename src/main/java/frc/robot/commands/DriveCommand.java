@@ -2,38 +2,93 @@ package frc.robot.commands;
 
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.lib.DTXboxController;
-import frc.robot.Constants;
+import frc.lib.LoopProfiler;
+import frc.lib.PowerGovernor;
+import frc.lib.ProfiledSection;
 import frc.robot.subsystems.DriveTrain;
 
 public class DriveCommand extends CommandBase{
     private DTXboxController controller;
     private DriveTrain driveTrain;
+    private final ProfiledSection profile = LoopProfiler.section("DriveCommand.execute");
+    private final ProfiledSection fastProfile = LoopProfiler.section("DriveCommand.fastExecute");
+    // Read on the robot thread only, which runs the fast periodic too
+    private boolean fastLoop;
+    private final PowerGovernor.Mechanism power;
+    private boolean active;
 
     public DriveCommand(DriveTrain driveTrain, DTXboxController controller) {
+        this(driveTrain, controller, false, null);
+    }
+
+    /**
+     * @param fastLoop
+     *        If true the drivetrain is written from {@link #fastExecute()}
+     *        instead of {@link #execute()}
+     * @param power
+     *        Governor limit the drive output is scaled by, or null for none
+     */
+    public DriveCommand(DriveTrain driveTrain, DTXboxController controller, boolean fastLoop,
+            PowerGovernor.Mechanism power) {
         this.controller = controller;
         this.driveTrain = driveTrain;
+        this.fastLoop = fastLoop;
+        this.power = power;
         addRequirements(driveTrain);
     }
 
+    /**
+     * Moves driving between {@link #execute()} and {@link #fastExecute()}
+     * from the next loop. Only the drive latency test switches at runtime.
+     */
+    public void setFastLoop(boolean fastLoop) {
+        this.fastLoop = fastLoop;
+    }
+
+    @Override
+    public void initialize() {
+        active = true;
+    }
+
     @Override
     public void execute() {
-        double forwardSpeed = controller.getLeftStickYSquared();
-        double rotationSpeed = -controller.getRightStickXSquared();
-        if (!(controller.getRightBumper() && controller.getLeftBumper())) {
-            if (Math.abs(forwardSpeed) > Constants.MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS) {
-                forwardSpeed = Math.copySign(Constants.MAX_KIDDIE_DRIVE_VELOCITY_FORWARDS, forwardSpeed);
-            }
-            if (Math.abs(rotationSpeed) > Constants.MAX_KIDDIE_DRIVE_VELOCITY_ROTATION) {
-                rotationSpeed = Math.copySign(Constants.MAX_KIDDIE_DRIVE_VELOCITY_ROTATION, rotationSpeed);
-            }
-
-            
+        long start = profile.start();
+        if (!fastLoop) {
+            drive();
+        }
+        profile.stop(start);
+    }
+
+    /**
+     * Runs from the fast periodic on the robot thread, between scheduler
+     * passes. Only drives while this command is scheduled, so the scheduler
+     * still decides who owns the drivetrain.
+     */
+    public void fastExecute() {
+        if (fastLoop && active) {
+            long start = fastProfile.start();
+            drive();
+            fastProfile.stop(start);
         }
-        driveTrain.drive(forwardSpeed, rotationSpeed);
     }
 
     @Override 
     public void end(boolean isInterrupted) {
+        active = false;
         driveTrain.drive(0, 0);
     }
+
+    private void drive() {
+        // Curves and the kiddie caps come from the controller's shaping profile
+        double forwardSpeed = controller.getShaped(DTXboxController.Axis.LEFT_Y);
+        double rotationSpeed = -controller.getShaped(DTXboxController.Axis.RIGHT_X);
+        // The power limit applies on top of the kiddie caps, and to the unlocked drive too
+        if (power != null) {
+            double scale = power.getScale();
+            forwardSpeed *= scale;
+            rotationSpeed *= scale;
+        }
+        // Tagged with when the sticks last moved, as first seen by either loop, for latency tracing
+        driveTrain.drive(forwardSpeed, rotationSpeed, controller.getInputChangedMicros());
+    }
 }
@@ -0,0 +1,98 @@
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.CompiledTrajectory;
+import frc.lib.LoopProfiler;
+import frc.lib.PoseBuffer;
+import frc.lib.ProfiledSection;
+import frc.robot.Constants;
+import frc.robot.DriveFeedforward;
+import frc.robot.subsystems.DriveTrain;
+
+/**
+ * Drives a precompiled trajectory with a RAMSETE controller on the
+ * drivetrain's odometry. Wheel speeds go out as feedforward plus a
+ * proportional correction, in volts. The controller is written out in plain
+ * doubles rather than using RamseteController and the kinematics classes,
+ * which allocate a pose and speeds object per call.
+ */
+public class FollowTrajectoryCommand extends CommandBase {
+    private final DriveTrain driveTrain;
+    private final CompiledTrajectory trajectory;
+    private final CompiledTrajectory.State reference = new CompiledTrajectory.State();
+    private final PoseBuffer.Sample pose = new PoseBuffer.Sample();
+    private final ProfiledSection profile = LoopProfiler.section("FollowTrajectoryCommand.execute");
+    private double startTime;
+    private double lastLeftSpeed;
+    private double lastRightSpeed;
+
+    public FollowTrajectoryCommand(DriveTrain driveTrain, CompiledTrajectory trajectory) {
+        this.driveTrain = driveTrain;
+        this.trajectory = trajectory;
+        addRequirements(driveTrain);
+    }
+
+    @Override
+    public void initialize() {
+        trajectory.sample(0, reference);
+        driveTrain.resetPose(reference.x, reference.y, reference.heading);
+        lastLeftSpeed = 0;
+        lastRightSpeed = 0;
+        startTime = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    public void execute() {
+        long start = profile.start();
+        trajectory.sample(Timer.getFPGATimestamp() - startTime, reference);
+
+        driveTrain.getPose(pose);
+
+        // Error in the robot's frame
+        double heading = pose.heading;
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double dx = reference.x - pose.x;
+        double dy = reference.y - pose.y;
+        double errorX = cos * dx + sin * dy;
+        double errorY = -sin * dx + cos * dy;
+        double errorHeading = Math.IEEEremainder(reference.heading - heading, 2 * Math.PI);
+
+        double referenceVelocity = reference.velocity;
+        double referenceTurnRate = reference.velocity * reference.curvature;
+        double k = 2 * Constants.RAMSETE_ZETA * Math.sqrt(referenceTurnRate * referenceTurnRate
+                + Constants.RAMSETE_B * referenceVelocity * referenceVelocity);
+        double velocity = referenceVelocity * Math.cos(errorHeading) + k * errorX;
+        double turnRate = referenceTurnRate + k * errorHeading
+                + Constants.RAMSETE_B * referenceVelocity * sinc(errorHeading) * errorY;
+
+        double halfTrack = Constants.DRIVE_TRACK_WIDTH_METERS / 2;
+        double leftSpeed = velocity - turnRate * halfTrack;
+        double rightSpeed = velocity + turnRate * halfTrack;
+        DriveFeedforward feedforward = DriveFeedforward.get();
+        double leftVolts = feedforward.calculate(leftSpeed, (leftSpeed - lastLeftSpeed) / Constants.LOOP_PERIOD)
+                + Constants.DRIVE_VELOCITY_KP * (leftSpeed - pose.leftVelocity);
+        double rightVolts = feedforward.calculate(rightSpeed, (rightSpeed - lastRightSpeed) / Constants.LOOP_PERIOD)
+                + Constants.DRIVE_VELOCITY_KP * (rightSpeed - pose.rightVelocity);
+        lastLeftSpeed = leftSpeed;
+        lastRightSpeed = rightSpeed;
+
+        driveTrain.setWheelVoltages(leftVolts, rightVolts);
+        profile.stop(start);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return Timer.getFPGATimestamp() - startTime >= trajectory.getTotalTimeSeconds();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        driveTrain.drive(0, 0);
+    }
+
+    private static double sinc(double x) {
+        return Math.abs(x) < 1e-9 ? 1 : Math.sin(x) / x;
+    }
+}
@@ -1,24 +1,50 @@
 package frc.robot.commands;
 
+import java.util.function.LongSupplier;
+
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.LoopProfiler;
+import frc.lib.ProfiledSection;
+import frc.robot.Tunables;
 import frc.robot.subsystems.FrisbeeFlinger;
 
 public class ShooterCommand extends CommandBase {
 
     private FrisbeeFlinger flinger;
+    private final LongSupplier inputMicros;
+    private final ProfiledSection profile = LoopProfiler.section("ShooterCommand.execute");
+    private long startInputMicros;
 
     public ShooterCommand(FrisbeeFlinger flinger) {
+        this(flinger, () -> 0L);
+    }
+
+    /**
+     * @param inputMicros
+     *        Acquisition time of the controller input, read when the command
+     *        starts and ends so the shooter writes are traced to the press and
+     *        release
+     */
+    public ShooterCommand(FrisbeeFlinger flinger, LongSupplier inputMicros) {
         this.flinger = flinger;
+        this.inputMicros = inputMicros;
+    }
+
+    @Override
+    public void initialize() {
+        startInputMicros = inputMicros.getAsLong();
     }
 
     @Override
     public void execute() {
-        flinger.spinShooter(1);
+        long start = profile.start();
+        flinger.setShooterRpm(Tunables.get().shooterTargetRpm, startInputMicros);
+        profile.stop(start);
     }
 
     @Override
     public void end(boolean interrupted) {
-        flinger.stopShooter();
+        flinger.stopShooter(inputMicros.getAsLong());
     }
 
 }
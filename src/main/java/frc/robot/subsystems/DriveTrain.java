@@ -1,22 +1,419 @@
 package frc.robot.subsystems;
 
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.TalonSRXControlMode;
+import com.ctre.phoenix.motorcontrol.TalonSRXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.wpilibj.drive.RobotDriveBase;
+import edu.wpi.first.wpilibj.simulation.ADXRS450_GyroSim;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotGearing;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotMotor;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotWheelSize;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.CoalescingMotorOutput;
+import frc.lib.DashboardTelemetry;
+import frc.lib.HighRateOdometry;
+import frc.lib.LatencyTrace;
+import frc.lib.LoopProfiler;
+import frc.lib.PoseBuffer;
+import frc.lib.ProfiledSection;
+import frc.lib.StatusFrameBudget;
+import frc.lib.TalonTelemetry;
+import frc.lib.ThreadPlacement;
+import frc.robot.Constants;
+import frc.robot.DriveFeedforward;
 
 
 public class DriveTrain extends SubsystemBase{
+    private static final double WHEEL_RADIUS_METERS = KitbotWheelSize.kSixInch.value / 2;
+    // Floor on the battery reading that voltages are divided by. The roboRIO browns out below
+    // this anyway, and a zero or missing reading would otherwise make the outputs infinite.
+    private static final double MIN_COMPENSATION_VOLTS = 6.0;
+
     private DifferentialDrive driveTrain;
+    private CoalescingMotorOutput leftOutput;
+    private CoalescingMotorOutput rightOutput;
+    private WPI_TalonSRX leftMotor;
+    private WPI_TalonSRX rightMotor;
+    private double forwardCommand;
+    private double rotationCommand;
+
+    private boolean velocityMode = Constants.DRIVE_VELOCITY_MODE;
+    // Set while the Talons are holding the wheel speed setpoints below
+    private boolean velocityActive;
+    private double leftSetpoint;
+    private double rightSetpoint;
+    private double leftError;
+    private double rightError;
+    private double trackingRms;
+    // One second of squared tracking error
+    private final LinearFilter trackingFilter =
+            LinearFilter.movingAverage((int) Math.round(1 / Constants.LOOP_PERIOD));
+
+    private ADXRS450_Gyro gyro;
+    private HighRateOdometry odometry;
+    private final PoseBuffer.Sample pose = new PoseBuffer.Sample();
+    private DoublePublisher poseAge;
+    private DoublePublisher headingDrift;
+    private final ProfiledSection profile = LoopProfiler.section("DriveTrain.periodic");
+
+    private DifferentialDrivetrainSim driveSim;
+    private TalonSRXSimCollection leftSim;
+    private TalonSRXSimCollection rightSim;
+    private ADXRS450_GyroSim gyroSim;
+    private double lastSimVelocity;
+    private DoublePublisher simVelocity;
+    private DoublePublisher simAcceleration;
+    private DoublePublisher simCurrent;
+    private DoublePublisher simPoseError;
+    // Model pose at the last odometry reset, and where that reset put the robot on the field
+    private Pose2d simModelOrigin = new Pose2d();
+    private Pose2d simFieldOrigin = new Pose2d();
 
     public DriveTrain(int leftID, int rightID) {
-        WPI_TalonSRX leftMotor = new WPI_TalonSRX(leftID);
-        WPI_TalonSRX rightMotor = new WPI_TalonSRX(rightID);
+        leftMotor = new WPI_TalonSRX(leftID);
+        rightMotor = new WPI_TalonSRX(rightID);
         rightMotor.setInverted(true);
-        driveTrain = new DifferentialDrive(leftMotor, rightMotor);
+        // Velocity loop for velocity mode. The phase must make positive output read as positive
+        // velocity on the Talon, which the Talon keeps through the right side's invert
+        for (WPI_TalonSRX motor : new WPI_TalonSRX[] { leftMotor, rightMotor }) {
+            motor.configSelectedFeedbackSensor(FeedbackDevice.CTRE_MagEncoder_Relative, 0, Constants.CAN_TIMEOUT_MS);
+            motor.setSensorPhase(Constants.DRIVE_SENSOR_PHASE);
+            motor.config_kP(0, Constants.DRIVE_TALON_KP, Constants.CAN_TIMEOUT_MS);
+            motor.config_kI(0, Constants.DRIVE_TALON_KI, Constants.CAN_TIMEOUT_MS);
+            motor.config_kD(0, Constants.DRIVE_TALON_KD, Constants.CAN_TIMEOUT_MS);
+            motor.config_kF(0, 0, Constants.CAN_TIMEOUT_MS);
+        }
+        leftOutput = new CoalescingMotorOutput(leftMotor);
+        rightOutput = new CoalescingMotorOutput(rightMotor);
+        driveTrain = new DifferentialDrive(leftOutput, rightOutput);
+        LatencyTrace latency = new LatencyTrace("Drive");
+        leftOutput.setLatencyTrace(latency);
+        rightOutput.setLatencyTrace(latency);
+
+        // Odometry samples the encoders at its own rate; output, current and voltage are only
+        // read by the 20 ms telemetry log
+        int odometryFrameMs = (int) Math.round(Constants.ODOMETRY_PERIOD * 1000);
+        for (WPI_TalonSRX motor : new WPI_TalonSRX[] { leftMotor, rightMotor }) {
+            new StatusFrameBudget(motor, "DriveTrain " + motor.getDeviceID())
+                .need(TalonTelemetry.SELECTED_SENSOR, odometryFrameMs)
+                .need(TalonTelemetry.APPLIED_OUTPUT, 20)
+                .need(TalonTelemetry.CURRENT, 20)
+                .need(TalonTelemetry.BATTERY_AND_TEMPERATURE, 100)
+                .apply();
+        }
+
+        // Calibration blocks startup for about 5 s, and a missing gyro reports an error every boot
+        if (Constants.DRIVE_HAS_GYRO) {
+            gyro = new ADXRS450_Gyro();
+        }
+        odometry = new HighRateOdometry("Odometry", Constants.DRIVE_TRACK_WIDTH_METERS,
+                this::getLeftMeters, this::getRightMeters, this::getLeftVelocity, this::getRightVelocity,
+                this::getGyroHeading);
+        NetworkTable odometryTable = NetworkTableInstance.getDefault().getTable("Odometry");
+        poseAge = odometryTable.getDoubleTopic("Pose age ms").publish();
+        headingDrift = odometryTable.getDoubleTopic("Heading drift deg").publish();
+
+        // Pose is copied out by periodic; the rest are cached reads
+        DashboardTelemetry.addDouble("Drive/Forward", Constants.TELEMETRY_PERIOD, 0.01, this::getForwardCommand);
+        DashboardTelemetry.addDouble("Drive/Rotation", Constants.TELEMETRY_PERIOD, 0.01, this::getRotationCommand);
+        DashboardTelemetry.addDouble("Drive/Left Output", Constants.TELEMETRY_PERIOD, 0.01, leftOutput::get);
+        DashboardTelemetry.addDouble("Drive/Right Output", Constants.TELEMETRY_PERIOD, 0.01, rightOutput::get);
+        DashboardTelemetry.addInteger("Drive/Left Sent Writes", Constants.TELEMETRY_PERIOD, leftOutput::getSentWrites);
+        DashboardTelemetry.addInteger("Drive/Left Skipped Writes", Constants.TELEMETRY_PERIOD,
+                leftOutput::getSkippedWrites);
+        DashboardTelemetry.addInteger("Drive/Right Sent Writes", Constants.TELEMETRY_PERIOD,
+                rightOutput::getSentWrites);
+        DashboardTelemetry.addInteger("Drive/Right Skipped Writes", Constants.TELEMETRY_PERIOD,
+                rightOutput::getSkippedWrites);
+        DashboardTelemetry.addDouble("Drive/Left m per s", Constants.TELEMETRY_PERIOD, 0.02, this::getLeftVelocity);
+        DashboardTelemetry.addDouble("Drive/Right m per s", Constants.TELEMETRY_PERIOD, 0.02, this::getRightVelocity);
+        DashboardTelemetry.addDouble("Drive/Current A", Constants.TELEMETRY_PERIOD, 1, this::getSupplyCurrent);
+        DashboardTelemetry.addDouble("Drive/X m", Constants.TELEMETRY_PERIOD, 0.01, () -> pose.x);
+        DashboardTelemetry.addDouble("Drive/Y m", Constants.TELEMETRY_PERIOD, 0.01, () -> pose.y);
+        DashboardTelemetry.addDouble("Drive/Heading deg", Constants.TELEMETRY_PERIOD, 0.5,
+                () -> Math.toDegrees(pose.heading));
+        DashboardTelemetry.addBoolean("Drive/Velocity Mode", Constants.TELEMETRY_PERIOD, this::isVelocityMode);
+        DashboardTelemetry.addDouble("Drive/Left Error m per s", Constants.TELEMETRY_PERIOD, 0.02, () -> leftError);
+        DashboardTelemetry.addDouble("Drive/Right Error m per s", Constants.TELEMETRY_PERIOD, 0.02, () -> rightError);
+        DashboardTelemetry.addDouble("Drive/Tracking RMS m per s", Constants.TELEMETRY_PERIOD, 0.01,
+                () -> trackingRms);
+
+        if (RobotBase.isSimulation()) {
+            driveSim = DifferentialDrivetrainSim.createKitbotSim(KitbotMotor.kSingleCIMPerSide, KitbotGearing.k10p71,
+                    KitbotWheelSize.kSixInch, null);
+            leftSim = leftMotor.getSimCollection();
+            rightSim = rightMotor.getSimCollection();
+            if (gyro != null) {
+                gyroSim = new ADXRS450_GyroSim(gyro);
+            }
+            NetworkTable table = NetworkTableInstance.getDefault().getTable("Sim").getSubTable("DriveTrain");
+            simVelocity = table.getDoubleTopic("Velocity m per s").publish();
+            simAcceleration = table.getDoubleTopic("Acceleration m per s2").publish();
+            simCurrent = table.getDoubleTopic("Current A").publish();
+            simPoseError = table.getDoubleTopic("Odometry error m").publish();
+        }
+
+        odometry.start(Constants.ODOMETRY_PERIOD, new ThreadPlacement(Constants.ODOMETRY_THREAD_CPU,
+                Constants.ODOMETRY_THREAD_REAL_TIME, Constants.ODOMETRY_THREAD_PRIORITY));
+    }
+
+    @Override
+    public void periodic() {
+        long start = profile.start();
+        // How stale the pose is when the loop sees it, and how far wheel slip has pulled the
+        // encoder heading from the gyro since the last reset
+        if (odometry.getPose(pose)) {
+            poseAge.set((RobotController.getFPGATime() - pose.timestampMicros) / 1e3);
+            headingDrift.set(Math.toDegrees(pose.encoderHeading - pose.heading));
+        }
+        // Tracking error of the velocity loops, averaged over the last second so it can be
+        // compared against battery voltage through a match
+        if (velocityActive) {
+            leftError = leftSetpoint - pose.leftVelocity;
+            rightError = rightSetpoint - pose.rightVelocity;
+            double meanSquare = trackingFilter.calculate((leftError * leftError + rightError * rightError) / 2);
+            trackingRms = Math.sqrt(meanSquare);
+        } else {
+            leftError = 0;
+            rightError = 0;
+        }
+        profile.stop(start);
+    }
+
+    @Override
+    public void simulationPeriodic() {
+        double battery = RobotController.getBatteryVoltage();
+        leftSim.setBusVoltage(battery);
+        rightSim.setBusVoltage(battery);
+        // The right Talon is inverted, so its lead voltage is the negative of the wheel's
+        driveSim.setInputs(leftSim.getMotorOutputLeadVoltage(), -rightSim.getMotorOutputLeadVoltage());
+        driveSim.update(Constants.LOOP_PERIOD);
+
+        // Raw counts are the sensor's own sense, so the inverted right Talon's run backwards
+        leftSim.setQuadratureRawPosition(metersToTicks(driveSim.getLeftPositionMeters()));
+        leftSim.setQuadratureVelocity(metersToTicks(driveSim.getLeftVelocityMetersPerSecond()) / 10);
+        rightSim.setQuadratureRawPosition(metersToTicks(-driveSim.getRightPositionMeters()));
+        rightSim.setQuadratureVelocity(metersToTicks(-driveSim.getRightVelocityMetersPerSecond()) / 10);
+        leftSim.setSupplyCurrent(driveSim.getLeftCurrentDrawAmps());
+        rightSim.setSupplyCurrent(driveSim.getRightCurrentDrawAmps());
+        // The gyro reads clockwise positive
+        if (gyroSim != null) {
+            gyroSim.setAngle(-driveSim.getHeading().getDegrees());
+        }
+
+        double velocity = (driveSim.getLeftVelocityMetersPerSecond() + driveSim.getRightVelocityMetersPerSecond()) / 2;
+        simVelocity.set(velocity);
+        simAcceleration.set((velocity - lastSimVelocity) / Constants.LOOP_PERIOD);
+        simCurrent.set(driveSim.getCurrentDrawAmps());
+        lastSimVelocity = velocity;
+
+        // Odometry against the model's true pose, carried onto the field the same way as the reset
+        Pose2d truth = simFieldOrigin.plus(new Transform2d(simModelOrigin, driveSim.getPose()));
+        odometry.getPose(pose);
+        simPoseError.set(Math.hypot(pose.x - truth.getX(), pose.y - truth.getY()));
     }
 
+    /**
+     * @return current drawn by the simulated drivetrain, for the battery model
+     */
+    public double getSimulatedCurrentDraw() {
+        return driveSim == null ? 0 : driveSim.getCurrentDrawAmps();
+    }
+
+    /**
+     * Arcade drive, traced as caused by an input.
+     *
+     * @param inputMicros
+     *        FPGA time the controller input behind this command was acquired
+     */
+    public void drive(double forwardSpeed, double rotation, long inputMicros) {
+        leftOutput.tagInput(inputMicros);
+        rightOutput.tagInput(inputMicros);
+        drive(forwardSpeed, rotation);
+    }
+
+    /**
+     * Arcade drive, on the stick fractions directly in open loop or as wheel
+     * speeds in velocity mode. Neither squares the inputs; response curves
+     * belong to the controller's shaping profile.
+     *
+     * @param forwardSpeed
+     *        Fraction of full speed, forwards positive
+     * @param rotation
+     *        Fraction of full turn rate, counterclockwise positive
+     */
     public void drive (double forwardSpeed, double rotation) {
-        driveTrain.arcadeDrive(forwardSpeed, rotation);
+        forwardCommand = forwardSpeed;
+        rotationCommand = rotation;
+        if (!velocityMode) {
+            velocityActive = false;
+            driveTrain.arcadeDrive(forwardSpeed, rotation, false);
+            return;
+        }
+
+        // Same mapping as DifferentialDrive.arcadeDriveIK without squaring, written out so it
+        // does not allocate a WheelSpeeds per call
+        double forward = MathUtil.applyDeadband(forwardSpeed, RobotDriveBase.kDefaultDeadband);
+        double turn = MathUtil.applyDeadband(rotation, RobotDriveBase.kDefaultDeadband);
+        double left = forward - turn;
+        double right = forward + turn;
+        double greater = Math.max(Math.abs(forward), Math.abs(turn));
+        if (greater > 0) {
+            double saturated = (greater + Math.min(Math.abs(forward), Math.abs(turn))) / greater;
+            left /= saturated;
+            right /= saturated;
+        }
+        // Top speed from the measured gains, so full stick stays within what the motors can hold
+        double maxSpeed = DriveFeedforward.get().maxAchievableVelocity(Constants.NOMINAL_VOLTAGE);
+        setWheelSpeeds(left * maxSpeed, right * maxSpeed);
+    }
+
+    /**
+     * Chooses between percent output arcade drive and the Talons' velocity
+     * loops for {@link #drive(double, double)}. Takes effect on the next call.
+     */
+    public void setVelocityMode(boolean velocityMode) {
+        this.velocityMode = velocityMode;
+    }
+
+    public boolean isVelocityMode() {
+        return velocityMode;
+    }
+
+    /**
+     * @return supply current drawn by both drive Talons
+     */
+    public double getSupplyCurrent() {
+        return leftMotor.getSupplyCurrent() + rightMotor.getSupplyCurrent();
+    }
+
+    /**
+     * Drives each side with a voltage, compensated for the battery, bypassing
+     * the arcade mapping. For trajectory following.
+     */
+    public void setWheelVoltages(double leftVolts, double rightVolts) {
+        double battery = compensationVoltage();
+        forwardCommand = 0;
+        rotationCommand = 0;
+        velocityActive = false;
+        leftOutput.set(leftVolts / battery);
+        rightOutput.set(rightVolts / battery);
+        driveTrain.feed();
+    }
+
+    /**
+     * Holds each side at a speed on its Talon's velocity loop, with the
+     * measured kS/kV feedforward for the present battery voltage added on top.
+     *
+     * @param leftSpeed
+     *        Meters per second, forwards positive
+     */
+    public void setWheelSpeeds(double leftSpeed, double rightSpeed) {
+        double battery = compensationVoltage();
+        DriveFeedforward feedforward = DriveFeedforward.get();
+        leftSetpoint = leftSpeed;
+        rightSetpoint = rightSpeed;
+        velocityActive = true;
+        leftOutput.set(TalonSRXControlMode.Velocity, metersPerSecondToTicksPer100ms(leftSpeed),
+                feedforward.calculate(leftSpeed, 0) / battery);
+        rightOutput.set(TalonSRXControlMode.Velocity, metersPerSecondToTicksPer100ms(rightSpeed),
+                feedforward.calculate(rightSpeed, 0) / battery);
+        driveTrain.feed();
+    }
+
+    /**
+     * Moves the odometry origin so the robot is at the given pose.
+     */
+    public void resetPose(double x, double y, double headingRadians) {
+        odometry.resetPose(x, y, headingRadians);
+        if (driveSim != null) {
+            simModelOrigin = driveSim.getPose();
+            simFieldOrigin = new Pose2d(x, y, new Rotation2d(headingRadians));
+        }
+    }
+
+    /**
+     * Copies the latest odometry sample into <code>out</code>. Never blocks,
+     * and safe from any thread.
+     *
+     * @return false if <code>out</code> was left holding the last pose read
+     *         into it, before the first sample or if the odometry thread was
+     *         mid-write
+     */
+    public boolean getPose(PoseBuffer.Sample out) {
+        return odometry.getPose(out);
+    }
+
+    // The sensor reads below run on the odometry thread
+
+    private double getLeftMeters() {
+        return ticksToMeters(leftMotor.getSelectedSensorPosition());
+    }
+
+    // The right Talon reads its sensor through the invert, so forwards counts up on both sides,
+    // the same sense the velocity loops in setWheelSpeeds rely on
+    private double getRightMeters() {
+        return ticksToMeters(rightMotor.getSelectedSensorPosition());
+    }
+
+    private double getLeftVelocity() {
+        return ticksToMeters(leftMotor.getSelectedSensorVelocity()) * 10;
+    }
+
+    private double getRightVelocity() {
+        return ticksToMeters(rightMotor.getSelectedSensorVelocity()) * 10;
+    }
+
+    // Counterclockwise positive, or NaN without a gyro so odometry falls back to the wheels
+    private double getGyroHeading() {
+        return gyro != null && gyro.isConnected() ? -Math.toRadians(gyro.getAngle()) : Double.NaN;
+    }
+
+    public double getForwardCommand() {
+        return forwardCommand;
+    }
+
+    public double getRotationCommand() {
+        return rotationCommand;
+    }
+
+    public CoalescingMotorOutput getLeftOutput() {
+        return leftOutput;
+    }
+
+    public CoalescingMotorOutput getRightOutput() {
+        return rightOutput;
+    }
+
+    private static double compensationVoltage() {
+        double battery = RobotController.getBatteryVoltage();
+        return battery >= MIN_COMPENSATION_VOLTS ? battery : MIN_COMPENSATION_VOLTS;
+    }
+
+    private static double ticksToMeters(double ticks) {
+        return ticks / Constants.TALON_ENCODER_CPR * 2 * Math.PI * WHEEL_RADIUS_METERS;
+    }
+
+    private static double metersPerSecondToTicksPer100ms(double speed) {
+        return speed / (2 * Math.PI * WHEEL_RADIUS_METERS) * Constants.TALON_ENCODER_CPR / 10;
+    }
+
+    private static int metersToTicks(double meters) {
+        return (int) (meters / (2 * Math.PI * WHEEL_RADIUS_METERS) * Constants.TALON_ENCODER_CPR);
     }
-}
\ No newline at end of file
+}
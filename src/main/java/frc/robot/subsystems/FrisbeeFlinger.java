@@ -1,33 +1,340 @@
 package frc.robot.subsystems;
 
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.ctre.phoenix.motorcontrol.TalonSRXControlMode;
+import com.ctre.phoenix.motorcontrol.TalonSRXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
 
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.CoalescingMotorOutput;
+import frc.lib.DashboardTelemetry;
+import frc.lib.LatencyTrace;
+import frc.lib.LoopProfiler;
+import frc.lib.MotorThermalModel;
+import frc.lib.PowerGovernor;
+import frc.lib.ProfiledSection;
+import frc.lib.StatusFrameBudget;
+import frc.lib.TalonTelemetry;
 import frc.robot.Constants;
+import frc.robot.Tunables;
 
 public class FrisbeeFlinger extends SubsystemBase {
-    private WPI_TalonSRX feederMotor;
-    private WPI_TalonSRX shooterMotor;
+    private static final DCMotor SHOOTER_GEARBOX = DCMotor.getCIM(1);
+    private static final double  SPUN_UP_FRACTION = 0.95;
+
+    private CoalescingMotorOutput feederMotor;
+    private CoalescingMotorOutput shooterMotor;
+    private WPI_TalonSRX shooterTalon;
+    private final SimpleMotorFeedforward shooterFeedforward =
+            new SimpleMotorFeedforward(Constants.SHOOTER_KS_VOLTS, Constants.SHOOTER_KV_VOLTS_PER_RPM);
+    private double shooterRequestedRpm;
+    private double shooterTargetRpm;
+    private double shooterPercent;
+    private double feederPercent;
+    private double shooterRpm;
+    private PowerGovernor.Mechanism shooterPower;
+    private PowerGovernor.Mechanism feederPower;
+    private MotorThermalModel shooterThermal;
+    private MotorThermalModel feederThermal;
+    private final ProfiledSection profile = LoopProfiler.section("FrisbeeFlinger.periodic");
+
+    private FlywheelSim shooterSim;
+    private FlywheelSim feederSim;
+    private TalonSRXSimCollection shooterSimCollection;
+    private TalonSRXSimCollection feederSimCollection;
+    private boolean spinningUp;
+    private double spinUpStart = -1;
+    private double simFeedTime;
+    private DoublePublisher simShooterRpm;
+    private DoublePublisher simSpinUpTime;
+    private DoublePublisher simCurrent;
 
     public FrisbeeFlinger(int feederID, int shooterID){
-        feederMotor = new WPI_TalonSRX(feederID);
-        shooterMotor = new WPI_TalonSRX(shooterID);
+        WPI_TalonSRX feederTalon = new WPI_TalonSRX(feederID);
+        shooterTalon = new WPI_TalonSRX(shooterID);
+        feederMotor = new CoalescingMotorOutput(feederTalon);
+        shooterMotor = new CoalescingMotorOutput(shooterTalon);
+        shooterMotor.setLatencyTrace(new LatencyTrace("Shooter"));
+
+        shooterTalon.configSelectedFeedbackSensor(FeedbackDevice.CTRE_MagEncoder_Relative, 0, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.setSensorPhase(Constants.SHOOTER_SENSOR_PHASE);
+        shooterTalon.config_kP(0, Constants.SHOOTER_KP, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.config_kI(0, Constants.SHOOTER_KI, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.config_kD(0, Constants.SHOOTER_KD, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.config_kF(0, 0, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.configVoltageCompSaturation(Constants.NOMINAL_VOLTAGE, Constants.CAN_TIMEOUT_MS);
+        shooterTalon.enableVoltageCompensation(true);
+
+        // The at-speed check reads the shooter encoder every loop, so it gets the fast frame
+        new StatusFrameBudget(shooterTalon, "Shooter")
+            .need(TalonTelemetry.SELECTED_SENSOR, 10)
+            .need(TalonTelemetry.APPLIED_OUTPUT, 20)
+            .need(TalonTelemetry.CURRENT, 20)
+            .need(TalonTelemetry.BATTERY_AND_TEMPERATURE, 100)
+            .apply();
+        new StatusFrameBudget(feederTalon, "Feeder")
+            .need(TalonTelemetry.APPLIED_OUTPUT, 20)
+            .need(TalonTelemetry.CURRENT, 20)
+            .need(TalonTelemetry.BATTERY_AND_TEMPERATURE, 100)
+            .apply();
+
+        // Both are single CIMs
+        double windingOhms = DCMotor.getCIM(1).rOhms;
+        shooterThermal = new MotorThermalModel("Shooter", shooterTalon, windingOhms, Constants.CIM_THERMAL_RESISTANCE,
+                Constants.CIM_THERMAL_CAPACITANCE, Constants.CIM_MAX_CELSIUS, Constants.THERMAL_HORIZON_SECONDS);
+        feederThermal = new MotorThermalModel("Feeder", feederTalon, windingOhms, Constants.CIM_THERMAL_RESISTANCE,
+                Constants.CIM_THERMAL_CAPACITANCE, Constants.CIM_MAX_CELSIUS, Constants.THERMAL_HORIZON_SECONDS);
+
+        DashboardTelemetry.addDouble("Shooter/RPM", Constants.TELEMETRY_PERIOD, 10, this::getShooterRpm);
+        DashboardTelemetry.addDouble("Shooter/Target RPM", Constants.TELEMETRY_PERIOD, 10, this::getShooterTargetRpm);
+        DashboardTelemetry.addBoolean("Shooter/At Speed", Constants.TELEMETRY_PERIOD, this::isShooterAtSpeed);
+        DashboardTelemetry.addDouble("Shooter/Output", Constants.TELEMETRY_PERIOD, 0.01, shooterMotor::get);
+        DashboardTelemetry.addDouble("Shooter/Current A", Constants.TELEMETRY_PERIOD, 1, this::getShooterSupplyCurrent);
+        DashboardTelemetry.addInteger("Shooter/Sent Writes", Constants.TELEMETRY_PERIOD, shooterMotor::getSentWrites);
+        DashboardTelemetry.addInteger("Shooter/Skipped Writes", Constants.TELEMETRY_PERIOD,
+                shooterMotor::getSkippedWrites);
+        DashboardTelemetry.addDouble("Feeder/Output", Constants.TELEMETRY_PERIOD, 0.01, feederMotor::get);
+        DashboardTelemetry.addDouble("Feeder/Current A", Constants.TELEMETRY_PERIOD, 1, this::getFeederSupplyCurrent);
+        DashboardTelemetry.addInteger("Feeder/Sent Writes", Constants.TELEMETRY_PERIOD, feederMotor::getSentWrites);
+        DashboardTelemetry.addInteger("Feeder/Skipped Writes", Constants.TELEMETRY_PERIOD,
+                feederMotor::getSkippedWrites);
+
+        if (RobotBase.isSimulation()) {
+            shooterSim = new FlywheelSim(SHOOTER_GEARBOX, Constants.SHOOTER_GEARING, Constants.SHOOTER_MOI_KG_M2);
+            feederSim = new FlywheelSim(DCMotor.getCIM(1), Constants.FEEDER_GEARING, Constants.FEEDER_MOI_KG_M2);
+            shooterSimCollection = shooterTalon.getSimCollection();
+            feederSimCollection = feederTalon.getSimCollection();
+            NetworkTable table = NetworkTableInstance.getDefault().getTable("Sim").getSubTable("FrisbeeFlinger");
+            simShooterRpm = table.getDoubleTopic("Shooter RPM").publish();
+            simSpinUpTime = table.getDoubleTopic("Shooter Spin-up s").publish();
+            simCurrent = table.getDoubleTopic("Current A").publish();
+        }
+    }
+
+    @Override
+    public void periodic() {
+        long start = profile.start();
+        shooterRpm = ticksPer100msToRpm(shooterTalon.getSelectedSensorVelocity());
+        shooterThermal.update();
+        feederThermal.update();
+        // Rewrite the last request so a changed power or thermal scale applies even when no
+        // command is writing
+        writeShooter();
+        writeFeeder();
+        profile.stop(start);
+    }
+
+    @Override
+    public void simulationPeriodic() {
+        double battery = RobotController.getBatteryVoltage();
+        shooterSimCollection.setBusVoltage(battery);
+        feederSimCollection.setBusVoltage(battery);
+
+        double shooterVolts = shooterSimCollection.getMotorOutputLeadVoltage();
+        shooterSim.setInputVoltage(shooterVolts);
+        shooterSim.update(Constants.LOOP_PERIOD);
+        feederSim.setInputVoltage(feederSimCollection.getMotorOutputLeadVoltage());
+        feederSim.update(Constants.LOOP_PERIOD);
+
+        // Discs take speed off the wheel as the feeder pushes them through
+        if (feederMotor.get() > 0) {
+            simFeedTime += Constants.LOOP_PERIOD;
+            if (simFeedTime >= Constants.SIM_FEED_TIME_PER_DISC) {
+                simFeedTime = 0;
+                shooterSim.setState(VecBuilder.fill(
+                        shooterSim.getAngularVelocityRadPerSec() * (1 - Constants.SIM_DISC_SPEED_LOSS)));
+            }
+        }
+
+        double shooterRadPerSec = shooterSim.getAngularVelocityRadPerSec();
+        shooterSimCollection.setQuadratureVelocity(radPerSecToTicksPer100ms(shooterRadPerSec));
+        shooterSimCollection.setSupplyCurrent(shooterSim.getCurrentDrawAmps());
+        feederSimCollection.setSupplyCurrent(feederSim.getCurrentDrawAmps());
+        shooterSimCollection.setStatorCurrent(shooterSim.getCurrentDrawAmps());
+        feederSimCollection.setStatorCurrent(feederSim.getCurrentDrawAmps());
+
+        // Spin-up is timed from the shooter being commanded until the wheel reaches 95% of the
+        // free speed for the voltage it is getting
+        double now = Timer.getFPGATimestamp();
+        double freeSpeed = Math.abs(shooterVolts) * SHOOTER_GEARBOX.KvRadPerSecPerVolt / Constants.SHOOTER_GEARING;
+        if (shooterTargetRpm == 0 && shooterMotor.get() == 0) {
+            spinningUp = false;
+            spinUpStart = -1;
+        } else if (spinUpStart < 0) {
+            spinningUp = true;
+            spinUpStart = now;
+        } else if (spinningUp && Math.abs(shooterRadPerSec) >= SPUN_UP_FRACTION * freeSpeed) {
+            simSpinUpTime.set(now - spinUpStart);
+            spinningUp = false;
+        }
+
+        simShooterRpm.set(shooterRadPerSec * 60 / (2 * Math.PI));
+        simCurrent.set(getSimulatedCurrentDraw());
+    }
+
+    /**
+     * @return current drawn by the simulated shooter and feeder, for the battery model
+     */
+    public double getSimulatedCurrentDraw() {
+        return shooterSim == null ? 0 : shooterSim.getCurrentDrawAmps() + feederSim.getCurrentDrawAmps();
+    }
+
+    /**
+     * Scales the shooter and feeder by the governor's output limits from now on.
+     */
+    public void setPowerLimits(PowerGovernor.Mechanism shooterPower, PowerGovernor.Mechanism feederPower) {
+        this.shooterPower = shooterPower;
+        this.feederPower = feederPower;
+    }
+
+    /**
+     * @return supply current drawn by the shooter Talon
+     */
+    public double getShooterSupplyCurrent() {
+        return shooterMotor.getMotor().getSupplyCurrent();
+    }
+
+    /**
+     * @return supply current drawn by the feeder Talon
+     */
+    public double getFeederSupplyCurrent() {
+        return feederMotor.getMotor().getSupplyCurrent();
+    }
+
+    /**
+     * Percent output, traced as caused by an input.
+     *
+     * @param inputMicros
+     *        FPGA time the controller input behind this command was acquired
+     */
+    public void spinShooter(double speed, long inputMicros){
+        shooterMotor.tagInput(inputMicros);
+        spinShooter(speed);
     }
 
     public void spinShooter(double speed){
-        shooterMotor.set(TalonSRXControlMode.PercentOutput, speed);
+        shooterRequestedRpm = 0;
+        shooterPercent = speed;
+        writeShooter();
+    }
+
+    /**
+     * Velocity control, traced as caused by an input.
+     *
+     * @param inputMicros
+     *        FPGA time the controller input behind this command was acquired
+     */
+    public void setShooterRpm(double rpm, long inputMicros){
+        shooterMotor.tagInput(inputMicros);
+        setShooterRpm(rpm);
+    }
+
+    /**
+     * Runs the shooter on the Talon's velocity loop with a kS/kV feedforward.
+     * Under a power limit the wheel is run slower rather than cut.
+     */
+    public void setShooterRpm(double rpm){
+        shooterRequestedRpm = rpm;
+        writeShooter();
     }
     
+    /**
+     * Stops the shooter, traced as caused by an input.
+     */
+    public void stopShooter(long inputMicros){
+        shooterMotor.tagInput(inputMicros);
+        stopShooter();
+    }
+
     public void stopShooter(){
-        shooterMotor.set(TalonSRXControlMode.PercentOutput, 0);
+        shooterRequestedRpm = 0;
+        shooterPercent = 0;
+        writeShooter();
+    }
+
+    public double getShooterRpm() {
+        return shooterRpm;
+    }
+
+    /**
+     * @return speed the Talon is holding the shooter to, after the power limit
+     */
+    public double getShooterTargetRpm() {
+        return shooterTargetRpm;
+    }
+
+    /**
+     * @return true when the shooter has a velocity target and the measured
+     *         speed is within tolerance of it
+     */
+    public boolean isShooterAtSpeed() {
+        return shooterTargetRpm > 0
+                && Math.abs(shooterRpm - shooterTargetRpm) <= Tunables.get().shooterAtSpeedToleranceRpm;
     }
     
     public void spinFeeder(){
-        feederMotor.set(TalonSRXControlMode.PercentOutput,Constants.FEEDER_SPEED); 
+        feederPercent = Tunables.get().feederSpeed;
+        writeFeeder();
     }
 
     public void stopFeeder(){
-        feederMotor.set(TalonSRXControlMode.PercentOutput,0);
+        feederPercent = 0;
+        writeFeeder();
+    }
+
+    public MotorThermalModel getShooterThermal() {
+        return shooterThermal;
+    }
+
+    public MotorThermalModel getFeederThermal() {
+        return feederThermal;
+    }
+
+    public CoalescingMotorOutput getShooterOutput() {
+        return shooterMotor;
+    }
+
+    public CoalescingMotorOutput getFeederOutput() {
+        return feederMotor;
+    }
+
+    private void writeShooter() {
+        double scale = (shooterPower == null ? 1 : shooterPower.getScale()) * shooterThermal.getScale();
+        if (shooterRequestedRpm > 0) {
+            shooterTargetRpm = shooterRequestedRpm * scale;
+            double feedForwardVolts = shooterFeedforward.calculate(shooterTargetRpm);
+            shooterMotor.set(TalonSRXControlMode.Velocity, rpmToTicksPer100ms(shooterTargetRpm),
+                    feedForwardVolts / Constants.NOMINAL_VOLTAGE);
+        } else {
+            shooterTargetRpm = 0;
+            shooterMotor.set(TalonSRXControlMode.PercentOutput, shooterPercent * scale);
+        }
+    }
+
+    private void writeFeeder() {
+        double scale = (feederPower == null ? 1 : feederPower.getScale()) * feederThermal.getScale();
+        feederMotor.set(TalonSRXControlMode.PercentOutput, feederPercent * scale);
+    }
+
+    private static double rpmToTicksPer100ms(double rpm) {
+        return rpm * Constants.TALON_ENCODER_CPR / 600;
+    }
+
+    private static double ticksPer100msToRpm(double ticks) {
+        return ticks * 600 / Constants.TALON_ENCODER_CPR;
+    }
+
+    private static int radPerSecToTicksPer100ms(double radPerSec) {
+        return (int) (radPerSec / (2 * Math.PI) * Constants.TALON_ENCODER_CPR / 10);
     }
 }
@@ -0,0 +1,119 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fits samples generated from known gains. Velocity within each run is a
+ * quadratic in time, so the central difference the fit takes is the exact
+ * acceleration and the gains should come back to rounding error.
+ */
+class FeedforwardFitTest {
+    private static final double KS = 0.8;
+    private static final double KV = 2.5;
+    private static final double KA = 0.4;
+
+    private static final double DT           = 0.02;
+    private static final int    RUN_SAMPLES  = 150;
+    private static final double MIN_VELOCITY = 0.05;
+    private static final double TOLERANCE    = 1e-9;
+
+    @Test
+    void recoversKnownGains() {
+        FeedforwardFit fit = new FeedforwardFit(4 * RUN_SAMPLES, MIN_VELOCITY);
+        double time = 0;
+        // Quasistatic ramps, then steps that accelerate hard and level off, each way
+        time = addRun(fit, time, 1, 0.1, 0.5, 0);
+        time = addRun(fit, time, -1, 0.1, 0.5, 0);
+        time = addRun(fit, time, 1, 0.2, 2, -0.3);
+        addRun(fit, time, -1, 0.2, 2, -0.3);
+
+        assertExact(fit.fit());
+    }
+
+    @Test
+    void doesNotDifferenceAcrossRuns() {
+        FeedforwardFit fit = new FeedforwardFit(4 * RUN_SAMPLES, MIN_VELOCITY);
+        // Back to back in time, so only the run boundaries keep the jumps in velocity between
+        // runs out of the acceleration
+        double time = 0;
+        time = addRun(fit, time, 1, 0.1, 0.5, 0);
+        time = addRun(fit, time, -1, 2, 1, 0);
+        time = addRun(fit, time, 1, 0.2, 2, -0.3);
+        addRun(fit, time, -1, 3, -0.5, 0.1);
+
+        assertExact(fit.fit());
+    }
+
+    @Test
+    void ignoresSamplesBelowMinVelocity() {
+        FeedforwardFit fit = new FeedforwardFit(5 * RUN_SAMPLES, MIN_VELOCITY);
+        // Voltage short of breaking static friction, so the wheels have not moved
+        fit.startRun();
+        for (int i = 0; i < RUN_SAMPLES; i++) {
+            fit.add(i * DT, 0.5 * KS * i / RUN_SAMPLES, 0);
+        }
+        double time = RUN_SAMPLES * DT;
+        time = addRun(fit, time, 1, 0.1, 0.5, 0);
+        time = addRun(fit, time, -1, 0.1, 0.5, 0);
+        time = addRun(fit, time, 1, 0.2, 2, -0.3);
+        addRun(fit, time, -1, 0.2, 2, -0.3);
+
+        assertExact(fit.fit());
+    }
+
+    @Test
+    void needsAccelerationToSeparateKa() {
+        FeedforwardFit fit = new FeedforwardFit(2 * RUN_SAMPLES, MIN_VELOCITY);
+        // Equal ramps each way accelerate in step with the direction, so kA and kS cannot be told apart
+        double time = 0;
+        time = addRun(fit, time, 1, 0.1, 0.5, 0);
+        addRun(fit, time, -1, 0.1, 0.5, 0);
+
+        assertNull(fit.fit());
+    }
+
+    @Test
+    void needsThreeSamples() {
+        FeedforwardFit fit = new FeedforwardFit(RUN_SAMPLES, MIN_VELOCITY);
+        fit.startRun();
+        for (int i = 0; i < 4; i++) {
+            fit.add(i * DT, volts(1, 0), 1);
+        }
+
+        assertNull(fit.fit());
+    }
+
+    /**
+     * Logs one run with velocity <code>direction * (v0 + a0 t + c t^2)</code>,
+     * <code>t</code> from the start of the run.
+     *
+     * @return time after the last sample
+     */
+    private static double addRun(FeedforwardFit fit, double startTime, double direction, double v0, double a0,
+            double c) {
+        fit.startRun();
+        for (int i = 0; i < RUN_SAMPLES; i++) {
+            double t = i * DT;
+            double velocity = direction * (v0 + a0 * t + c * t * t);
+            double acceleration = direction * (a0 + 2 * c * t);
+            fit.add(startTime + t, volts(velocity, acceleration), velocity);
+        }
+        return startTime + RUN_SAMPLES * DT;
+    }
+
+    private static double volts(double velocity, double acceleration) {
+        return KS * Math.signum(velocity) + KV * velocity + KA * acceleration;
+    }
+
+    private static void assertExact(FeedforwardFit.Result result) {
+        assertNotNull(result);
+        assertEquals(KS, result.ks, TOLERANCE);
+        assertEquals(KV, result.kv, TOLERANCE);
+        assertEquals(KA, result.ka, TOLERANCE);
+        assertEquals(1, result.rSquared, TOLERANCE);
+    }
+}
@@ -0,0 +1,106 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.event.EventLoop;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.AllocationCounter;
+import frc.lib.LoopProfiler;
+import frc.lib.ProfiledSection;
+
+/**
+ * Runs the robot's own loop in HAL simulation, with the sticks moving and both
+ * triggers down so the drive, shooter and full-auto feeder are all running,
+ * and fails if any {@link ProfiledSection} allocates once warmed up. That
+ * covers the controller snapshot, trigger evaluation, the command executes,
+ * the subsystem periodics, telemetry and the fast periodic.
+ *
+ * <p>Sections wrapping WPILib code that allocates on its own, the watchdog
+ * epochs of the loop and the scheduler in particular, are not checked.
+ * Trigger evaluation runs inside the scheduler, so it is polled from its own
+ * section to be checked apart from them.
+ */
+class AllocationTest {
+    private static final int WARMUP_LOOPS   = 3_000;
+    private static final int MEASURED_LOOPS = 5_000;
+
+    private static final Set<String> UNCHECKED = Set.of("Robot.robotPeriodic", "CommandScheduler.run");
+
+    @Test
+    void robotLoopDoesNotAllocateOnceWarm() throws InterruptedException {
+        LoopProfiler.trackAllocations(new ThreadAllocationCounter());
+        try (FullAutoTeleop teleop = FullAutoTeleop.start()) {
+            Robot robot = teleop.getRobot();
+            if (!Constants.FAST_DRIVE_LOOP) {
+                robot.addPeriodic(robot.getRobotContainer()::fastPeriodic, Constants.FAST_DRIVE_PERIOD);
+            }
+            measureTriggers();
+
+            for (int i = 0; i < WARMUP_LOOPS; i++) {
+                loop(teleop, i);
+            }
+            LoopProfiler.resetAllocations();
+            for (int i = 0; i < MEASURED_LOOPS; i++) {
+                loop(teleop, WARMUP_LOOPS + i);
+            }
+        }
+
+        List<String> allocating = new ArrayList<>();
+        for (ProfiledSection section : LoopProfiler.getSections()) {
+            long calls = section.getAllocationSamples();
+            if (calls > 0 && section.getAllocatedBytes() > 0 && !UNCHECKED.contains(section.getName())) {
+                allocating.add(String.format("%s %.1f bytes/call", section.getName(),
+                        (double) section.getAllocatedBytes() / calls));
+            }
+        }
+        assertTrue(allocating.isEmpty(), "Steady-state allocation in " + allocating);
+    }
+
+    /**
+     * Moves the bindings off the scheduler's button loop onto one that polls
+     * them inside a profiled section. The scheduler still polls at the same
+     * point in its run.
+     */
+    private static void measureTriggers() {
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        EventLoop bindings = scheduler.getDefaultButtonLoop();
+        ProfiledSection section = LoopProfiler.section("Triggers.poll");
+        EventLoop measured = new EventLoop();
+        measured.bind(() -> {
+            long start = section.start();
+            bindings.poll();
+            section.stop(start);
+        });
+        scheduler.setActiveButtonLoop(measured);
+    }
+
+    private static void loop(FullAutoTeleop teleop, int i) {
+        // Keep the sticks moving so no motor write is coalesced away
+        XboxControllerSim controller = teleop.getController();
+        controller.setLeftY(0.8 * Math.sin(i * 0.05));
+        controller.setRightX(0.6 * Math.cos(i * 0.03));
+        teleop.loop();
+    }
+
+    private static final class ThreadAllocationCounter implements AllocationCounter {
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private ThreadAllocationCounter() {
+            this.threads.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        @Override
+        public long threadAllocatedBytes() {
+            return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotGearing;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotWheelSize;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.lib.SteppedRobot;
+
+/**
+ * Runs the drivetrain characterization in test mode in HAL simulation and
+ * checks that it saves gains, with a kV matching the drivetrain model's.
+ * The model has no friction, so kS is not checked.
+ *
+ * <p>The saved gains land in the operating directory, so whatever was there
+ * is put back afterwards.
+ */
+class CharacterizeDriveTest {
+    private static final double TIMEOUT_SECONDS = 60;
+    private static final double KV_TOLERANCE    = 0.1;
+
+    @Test
+    void savesTheModelsGains() throws InterruptedException, IOException {
+        Path saved = Filesystem.getOperatingDirectory().toPath().resolve("drive-feedforward.properties");
+        byte[] previous = Files.exists(saved) ? Files.readAllBytes(saved) : null;
+        try (SteppedRobot<Robot> sim = SteppedRobot.start(Robot::new)) {
+            DriveFeedforward before = DriveFeedforward.get();
+            Command characterize = sim.getRobot().getRobotContainer().getTestCommand();
+            sim.enableTest();
+            sim.step(Constants.LOOP_PERIOD);
+            assertTrue(characterize.isScheduled(), "Test mode did not start characterizing");
+
+            int steps = 0;
+            while (characterize.isScheduled()) {
+                assertTrue(++steps * Constants.LOOP_PERIOD <= TIMEOUT_SECONDS, "Characterization never finished");
+                sim.step(Constants.LOOP_PERIOD);
+            }
+
+            DriveFeedforward measured = DriveFeedforward.get();
+            assertNotSame(before, measured, "Characterization saved nothing");
+            // Free speed of a frictionless drive is all back EMF: the motor's Kv through the gearing
+            double modelKv = KitbotGearing.k10p71.value
+                    / (DCMotor.getCIM(1).KvRadPerSecPerVolt * KitbotWheelSize.kSixInch.value / 2);
+            assertEquals(modelKv, measured.kvVoltsPerMps, KV_TOLERANCE * modelKv, "Fitted kV");
+        } finally {
+            if (previous != null) {
+                Files.write(saved, previous);
+            } else {
+                Files.deleteIfExists(saved);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.lib.SteppedRobot;
+import frc.robot.subsystems.DriveTrain;
+
+/**
+ * Measures stick-to-drive latency in HAL simulation, driving from the
+ * scheduler and then from the fast periodic, and checks the fast loop
+ * responds sooner. The stick moves at a random point within a loop, as a Driver Station
+ * packet would, and time is stepped finely until the drivetrain's command
+ * changes.
+ *
+ * <p>The <code>Latency.Drive</code> trace starts at the capture that first
+ * saw the change, so it leaves out the wait for the next loop, which is what
+ * the fast loop shortens; this times from the packet instead. Simulated time
+ * stands still while robot code runs, so the figures are the scheduling
+ * delay alone, without the loop's own run time. The percentiles of each
+ * mode are published as report entries, in the test results under
+ * build/test-results/test, and are in every failure message.
+ */
+class DriveLatencyTest {
+    private static final int    WARMUP_LOOPS    = 50;
+    private static final int    TRIALS          = 200;
+    private static final double RESOLUTION      = 0.0001;
+    private static final double SETTLE_SECONDS  = 0.3;
+    private static final double TIMEOUT_SECONDS = 0.1;
+    private static final double STICK           = 0.8;
+
+    private volatile boolean fastLoop;
+
+    @Test
+    void fastLoopShortensDriveLatency(TestReporter reporter) throws InterruptedException {
+        double[] scheduler;
+        double[] fast;
+        try (SteppedRobot<Robot> sim = SteppedRobot.start(Robot::new)) {
+            Robot robot = sim.getRobot();
+            RobotContainer container = robot.getRobotContainer();
+            if (!Constants.FAST_DRIVE_LOOP) {
+                robot.addPeriodic(() -> {
+                    if (fastLoop) {
+                        container.fastPeriodic();
+                    }
+                }, Constants.FAST_DRIVE_PERIOD);
+            }
+            sim.enableTeleop();
+            sim.step(WARMUP_LOOPS * Constants.LOOP_PERIOD);
+
+            XboxControllerSim controller = new XboxControllerSim(0);
+            Random random = new Random(6);
+            setFastLoop(container, false);
+            scheduler = measure(sim, controller, container.getDriveTrain(), random);
+            setFastLoop(container, true);
+            fast = measure(sim, controller, container.getDriveTrain(), random);
+        }
+
+        reporter.publishEntry("FAST_DRIVE_LOOP off", summary(scheduler));
+        reporter.publishEntry("FAST_DRIVE_LOOP on", summary(fast));
+        String figures = "off " + summary(scheduler) + "; on " + summary(fast);
+        double resolution = RESOLUTION * 1e3;
+        assertTrue(percentile(fast, 0.9) < percentile(scheduler, 0.9),
+                "Fast drive was not faster at p90: " + figures);
+        assertTrue(scheduler[scheduler.length - 1] <= Constants.LOOP_PERIOD * 1e3 + resolution,
+                "Scheduler drive waited longer than a loop: " + figures);
+        assertTrue(fast[fast.length - 1] <= Constants.FAST_DRIVE_PERIOD * 1e3 + resolution,
+                "Fast drive waited longer than a fast period: " + figures);
+    }
+
+    private void setFastLoop(RobotContainer container, boolean fast) {
+        fastLoop = fast;
+        container.setFastDriveLoop(fast);
+    }
+
+    /**
+     * @return latencies in milliseconds, sorted
+     */
+    private static double[] measure(SteppedRobot<Robot> sim, XboxControllerSim controller, DriveTrain driveTrain,
+            Random random) {
+        double[] latencies = new double[TRIALS];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            // Land the packet anywhere within a loop
+            int offsetSteps = random.nextInt((int) Math.round(Constants.LOOP_PERIOD / RESOLUTION));
+            sim.step(offsetSteps * RESOLUTION);
+
+            // Alternate between pushing forward and letting go, so every trial changes the command
+            double before = driveTrain.getForwardCommand();
+            long sentMicros = RobotController.getFPGATime();
+            controller.setLeftY(trial % 2 == 0 ? -STICK : 0);
+            controller.notifyNewData();
+            int steps = 0;
+            while (driveTrain.getForwardCommand() == before) {
+                assertTrue(++steps * RESOLUTION <= TIMEOUT_SECONDS, "Drive never responded to the stick");
+                sim.step(RESOLUTION);
+            }
+            latencies[trial] = (RobotController.getFPGATime() - sentMicros) / 1e3;
+            sim.step(SETTLE_SECONDS);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static String summary(double[] sorted) {
+        return String.format("p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms over %d moves",
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                sorted[sorted.length - 1], sorted.length);
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
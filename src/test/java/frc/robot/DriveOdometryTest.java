@@ -0,0 +1,77 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.lib.PoseBuffer;
+import frc.lib.SteppedRobot;
+import frc.robot.subsystems.DriveTrain;
+
+/**
+ * Drives the robot from the sticks in HAL simulation, in open loop and then
+ * in velocity mode, and checks the odometry pose against what the drivetrain
+ * model did: forwards grows x with both wheels reading forwards and the
+ * heading held, and turning left in place grows the heading.
+ *
+ * <p>Both modes run in the one robot, as the test JVM is only forked per
+ * class.
+ */
+class DriveOdometryTest {
+    private static final double DRIVE_SECONDS     = 2;
+    private static final double TURN_SECONDS      = 1;
+    private static final double SETTLE_SECONDS    = 1;
+    private static final double STICK             = 0.8;
+    private static final double HEADING_TOLERANCE = Math.toRadians(2);
+
+    @Test
+    void poseFollowsTheWheels() throws InterruptedException {
+        try (SteppedRobot<Robot> sim = SteppedRobot.start(Robot::new)) {
+            DriveTrain driveTrain = sim.getRobot().getRobotContainer().getDriveTrain();
+            XboxControllerSim controller = new XboxControllerSim(0);
+            sim.enableTeleop();
+
+            driveTrain.setVelocityMode(false);
+            driveAndTurn(sim, controller, driveTrain, "Open loop");
+
+            driveTrain.setVelocityMode(true);
+            driveAndTurn(sim, controller, driveTrain, "Velocity mode");
+        }
+    }
+
+    private static void driveAndTurn(SteppedRobot<Robot> sim, XboxControllerSim controller, DriveTrain driveTrain,
+            String mode) {
+        PoseBuffer.Sample pose = new PoseBuffer.Sample();
+        setSticks(controller, 0, 0);
+        sim.step(SETTLE_SECONDS);
+        driveTrain.resetPose(0, 0, 0);
+
+        // Stick forwards is negative
+        setSticks(controller, -STICK, 0);
+        sim.step(DRIVE_SECONDS);
+        assertTrue(driveTrain.getPose(pose), mode + ": no odometry sample");
+        assertTrue(pose.x > 0, mode + ": drove forwards but x is " + pose.x);
+        assertTrue(pose.leftVelocity > 0, mode + ": left wheel reads " + pose.leftVelocity + " m/s driving forwards");
+        assertTrue(pose.rightVelocity > 0,
+                mode + ": right wheel reads " + pose.rightVelocity + " m/s driving forwards");
+        assertEquals(0, pose.heading, HEADING_TOLERANCE, mode + ": heading drifted driving straight");
+
+        // Stick left turns counterclockwise
+        double headingBefore = pose.heading;
+        setSticks(controller, 0, -STICK);
+        sim.step(TURN_SECONDS);
+        assertTrue(driveTrain.getPose(pose), mode + ": no odometry sample");
+        assertTrue(pose.leftVelocity < 0, mode + ": left wheel reads " + pose.leftVelocity + " m/s turning left");
+        assertTrue(pose.rightVelocity > 0, mode + ": right wheel reads " + pose.rightVelocity + " m/s turning left");
+        assertTrue(pose.heading > headingBefore + HEADING_TOLERANCE, String.format(
+                "%s: turned left but heading went from %.3f to %.3f rad", mode, headingBefore, pose.heading));
+    }
+
+    private static void setSticks(XboxControllerSim controller, double leftY, double rightX) {
+        controller.setLeftY(leftY);
+        controller.setRightX(rightX);
+        controller.notifyNewData();
+    }
+}
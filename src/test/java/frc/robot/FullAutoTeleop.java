@@ -0,0 +1,57 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.lib.SteppedRobot;
+
+/**
+ * The robot running in HAL simulation, enabled in teleop with full auto
+ * selected and both triggers held, so the shooter spins and the feeder keeps
+ * cycling for as long as the tests step it. The sticks are left to the test.
+ */
+final class FullAutoTeleop implements AutoCloseable {
+    // Loop the full auto button is pressed on, once robotInit's bindings are polling
+    private static final int SELECT_LOOP = 10;
+
+    private final SteppedRobot<Robot> sim;
+    private final XboxControllerSim   controller = new XboxControllerSim(0);
+
+    private int loops;
+
+    private FullAutoTeleop(SteppedRobot<Robot> sim) {
+        this.sim = sim;
+    }
+
+    static FullAutoTeleop start() {
+        SteppedRobot<Robot> sim = SteppedRobot.start(Robot::new);
+        sim.enableTeleop();
+        return new FullAutoTeleop(sim);
+    }
+
+    Robot getRobot() {
+        return sim.getRobot();
+    }
+
+    /**
+     * For setting the sticks before a {@link #loop()}.
+     */
+    XboxControllerSim getController() {
+        return controller;
+    }
+
+    /**
+     * Holds the buttons and triggers and runs one robot loop.
+     */
+    void loop() {
+        controller.setYButton(loops == SELECT_LOOP);
+        controller.setRightTriggerAxis(1);
+        controller.setLeftTriggerAxis(1);
+        controller.notifyNewData();
+        sim.step(Constants.LOOP_PERIOD);
+        loops++;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        sim.close();
+    }
+}
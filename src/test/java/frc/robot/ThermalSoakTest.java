@@ -0,0 +1,72 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.lib.MotorThermalModel;
+import frc.robot.commands.BurstFireCommand;
+import frc.robot.subsystems.FrisbeeFlinger;
+
+/**
+ * Runs the robot's own loop in HAL simulation through a long practice
+ * session with the shooter and full-auto feeder held on, and fails if either
+ * motor thermal model lets its motor pass the maximum temperature. Keeping
+ * cool by cutting output does not pass: the shooter has to hold a useful
+ * mean speed and still be firing discs at a useful rate in the last minute,
+ * when the motors are hottest.
+ */
+class ThermalSoakTest {
+    private static final double SESSION_MINUTES       = 10;
+    private static final double MIN_MEAN_RPM_FRACTION = 0.5;
+    private static final double MIN_SHOTS_PER_MINUTE  = 10;
+
+    @Test
+    void motorsStayWithinTheirLimits() throws InterruptedException {
+        double shooterPeak = 0;
+        double feederPeak = 0;
+        double rpmTotal = 0;
+        long shots;
+        long lastMinuteShots;
+        int lastMinuteLoops = (int) Math.round(60 / Constants.LOOP_PERIOD);
+        int loops = (int) Math.round(SESSION_MINUTES * 60 / Constants.LOOP_PERIOD);
+        MotorThermalModel shooter;
+        MotorThermalModel feeder;
+        try (FullAutoTeleop teleop = FullAutoTeleop.start()) {
+            RobotContainer container = teleop.getRobot().getRobotContainer();
+            FrisbeeFlinger flinger = container.getFrisbeeFlinger();
+            shooter = flinger.getShooterThermal();
+            feeder = flinger.getFeederThermal();
+
+            BurstFireCommand burstFire = container.getBurstFireCommand();
+            long shotsBeforeLastMinute = 0;
+            for (int i = 0; i < loops; i++) {
+                if (i == loops - lastMinuteLoops) {
+                    shotsBeforeLastMinute = burstFire.getTotalShots();
+                }
+                teleop.loop();
+
+                shooterPeak = Math.max(shooterPeak, shooter.getTemperature());
+                feederPeak = Math.max(feederPeak, feeder.getTemperature());
+                rpmTotal += flinger.getShooterRpm();
+            }
+            shots = burstFire.getTotalShots();
+            lastMinuteShots = shots - shotsBeforeLastMinute;
+        }
+
+        assertTrue(shooterPeak <= shooter.getMaxTemperature(), String.format(
+                "Shooter peaked at %.1f C, limit %.1f C", shooterPeak, shooter.getMaxTemperature()));
+        assertTrue(feederPeak <= feeder.getMaxTemperature(), String.format(
+                "Feeder peaked at %.1f C, limit %.1f C", feederPeak, feeder.getMaxTemperature()));
+
+        double meanRpm = rpmTotal / loops;
+        double minMeanRpm = MIN_MEAN_RPM_FRACTION * Tunables.get().shooterTargetRpm;
+        assertTrue(meanRpm >= minMeanRpm, String.format(
+                "Shooter averaged %.0f RPM over the session, needs at least %.0f", meanRpm, minMeanRpm));
+        double minShots = MIN_SHOTS_PER_MINUTE * SESSION_MINUTES;
+        assertTrue(shots >= minShots, String.format("Fired %d discs in %.0f minutes, needs at least %.0f", shots,
+                SESSION_MINUTES, minShots));
+        assertTrue(lastMinuteShots >= MIN_SHOTS_PER_MINUTE, String.format(
+                "Fired %d discs in the last minute, needs at least %.0f", lastMinuteShots, MIN_SHOTS_PER_MINUTE));
+    }
+}